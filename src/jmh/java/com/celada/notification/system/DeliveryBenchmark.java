@@ -0,0 +1,103 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.config.CacheConfig;
+import com.celada.notification.system.config.NotificationSystemConfig;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.PublishResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End to end cost of a burst, from publishEvent through routeEventByPriority to the last lane send.
+ * Throughput is reported in events/s and burstLatency gives the percentiles of draining a whole burst.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DeliveryBenchmark {
+
+    private static final int BURST = 1_000;
+
+    @Param({"LOW_ONLY", "MIXED", "HIGH_ONLY"})
+    public PriorityMix priorityMix;
+
+    @Param({"NO_OP", "SIMULATED"})
+    public StubNotificationService.Latency latency;
+
+    // HEAVY reads back every event from a cache smaller than the burst, LIGHT never reads from a roomy one
+    @Param({"LIGHT", "HEAVY"})
+    public String cacheLoad;
+
+    private NotificationSystem system;
+    private AtomicLong delivered;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.delivered = new AtomicLong();
+        CacheConfig cache = "HEAVY".equals(this.cacheLoad)
+                ? CacheConfig.builder().maxEntries(BURST / 4).build()
+                : CacheConfig.builder().build();
+        this.system = new NotificationSystem(
+                new StubNotificationService(this.latency, this.delivered),
+                new StubNotificationService(this.latency, this.delivered),
+                new StubNotificationService(this.latency, this.delivered),
+                NotificationSystemConfig.builder().cache(cache).build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.system.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BURST)
+    public void burstThroughput(Blackhole blackhole) {
+        this.burst(blackhole);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void burstLatency(Blackhole blackhole) {
+        this.burst(blackhole);
+    }
+
+    private void burst(Blackhole blackhole) {
+        long expected = this.delivered.get();
+        for (int i = 0; i < BURST; i++) {
+            NotificationEvent event = this.priorityMix.nextEvent("Benchmark");
+            while (PublishResult.REJECTED.equals(this.system.publishEvent(event))) {
+                LockSupport.parkNanos(1_000);
+            }
+            expected += PriorityMix.sendsOf(event);
+            if ("HEAVY".equals(this.cacheLoad)) {
+                blackhole.consume(this.system.getNotificationById(event.getId()).block());
+            }
+        }
+
+        // Every send of the burst is done
+        while (this.delivered.get() < expected) {
+            LockSupport.parkNanos(10_000);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.config.NotificationSystemConfig;
+import com.celada.notification.system.config.ShardConfig;
+import com.celada.notification.system.models.PublishResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cost of publishEvent for one and many producers, sustained: a rejected event is offered again
+ * until the pipeline takes it, so the score is what the lanes keep up with and not the queue filling up.
+ * Throughput is reported in ops/s and the latency benchmarks give the percentiles of a single publish.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"LOW_ONLY", "MIXED", "HIGH_ONLY"})
+    public PriorityMix priorityMix;
+
+    // One pipeline drained by the producers, or one per core drained by its own worker
+    @Param({"false", "true"})
+    public boolean sharded;
+
+    private NotificationSystem system;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AtomicLong delivered = new AtomicLong();
+        this.system = new NotificationSystem(
+                new StubNotificationService(StubNotificationService.Latency.NO_OP, delivered),
+                new StubNotificationService(StubNotificationService.Latency.NO_OP, delivered),
+                new StubNotificationService(StubNotificationService.Latency.NO_OP, delivered),
+                NotificationSystemConfig.builder()
+                        .sharding(ShardConfig.builder().enabled(this.sharded).build())
+                        .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.system.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public PublishResult singleProducer() {
+        return this.publish();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public PublishResult multiProducer() {
+        return this.publish();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PublishResult singleProducerLatency() {
+        return this.publish();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public PublishResult multiProducerLatency() {
+        return this.publish();
+    }
+
+    private PublishResult publish() {
+        String source = Thread.currentThread().getName();
+        PublishResult result;
+        while (PublishResult.REJECTED.equals(result = this.system.publishEvent(this.priorityMix.nextEvent(source)))) {
+            LockSupport.parkNanos(1_000);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.Priority;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Share of each priority in the benchmark traffic, LOW events go to one channel and HIGH events to three.
+ */
+public enum PriorityMix {
+    LOW_ONLY(100, 0),
+    // 60% LOW, 30% MEDIUM, 10% HIGH
+    MIXED(60, 30),
+    HIGH_ONLY(0, 0);
+
+    private final int lowPercent;
+    private final int mediumPercent;
+
+    PriorityMix(int lowPercent, int mediumPercent) {
+        this.lowPercent = lowPercent;
+        this.mediumPercent = mediumPercent;
+    }
+
+    Priority next() {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        if (roll < this.lowPercent) {
+            return Priority.LOW;
+        }
+        return roll < this.lowPercent + this.mediumPercent ? Priority.MEDIUM : Priority.HIGH;
+    }
+
+    NotificationEvent nextEvent(String source) {
+        return NotificationEvent.builder()
+                .source(source)
+                .message("Benchmark notification")
+                .priority(this.next())
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * @return Channel sends the event leads to
+     */
+    static int sendsOf(NotificationEvent event) {
+        return switch (event.getPriority()) {
+            case HIGH -> 3;
+            case MEDIUM -> 2;
+            case LOW -> 1;
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.service.NotificationService;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provider that always succeeds, at once or after blocking like the real services do.
+ */
+public class StubNotificationService implements NotificationService {
+
+    public enum Latency {
+        NO_OP,
+        // Blocks 1 ms per send
+        SIMULATED
+    }
+
+    private final Latency latency;
+    private final AtomicLong delivered;
+
+    /**
+     * @param delivered Shared by the stubs of every channel
+     */
+    public StubNotificationService(Latency latency, AtomicLong delivered) {
+        this.latency = latency;
+        this.delivered = delivered;
+    }
+
+    @Override
+    public Mono<Boolean> sendNotification(NotificationEvent event) {
+        if (Latency.NO_OP.equals(this.latency)) {
+            return Mono.fromCallable(this::deliver);
+        }
+        return Mono.fromCallable(() -> {
+            Thread.sleep(1);
+            return this.deliver();
+        });
+    }
+
+    private Boolean deliver() {
+        this.delivered.incrementAndGet();
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package com.celada.notification.system.scheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to run a burst of blocking sends, the way a lane runs them, on each scheduler strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SchedulerStrategyBenchmark {
+
+    @Param({"BOUNDED_ELASTIC", "VIRTUAL_THREADS"})
+    public String strategy;
+
+    // Sends allowed in flight, like the lane concurrency
+    @Param({"100", "1000"})
+    public int concurrency;
+
+    // Latency of the simulated provider
+    @Param({"20"})
+    public long sendLatencyMillis;
+
+    private SchedulerStrategy schedulerStrategy;
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.schedulerStrategy = "VIRTUAL_THREADS".equals(this.strategy)
+                ? SchedulerStrategy.virtualThreads()
+                : SchedulerStrategy.boundedElastic();
+        this.scheduler = this.schedulerStrategy.schedulerFor("Benchmark-Channel");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.schedulerStrategy.release("Benchmark-Channel", this.scheduler);
+    }
+
+    @Benchmark
+    public Boolean blockingSends() {
+        // Burst of 2000 sends
+        return Flux.range(0, 2_000)
+                .flatMap(i -> Mono.fromCallable(this::send).subscribeOn(this.scheduler), this.concurrency)
+                .blockLast();
+    }
+
+    private Boolean send() throws InterruptedException {
+        Thread.sleep(this.sendLatencyMillis);
+        return true;
+    }
+}
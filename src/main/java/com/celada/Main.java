@@ -86,18 +86,18 @@ public class Main {
                         () -> log.debug("Finally"));
 
         log.info("------- Context Example -------");
-        Database.getDataAsFlux()
-                .filterWhen(vg -> Mono.deferContextual(ctx -> {
+        // Console index instead of checking every videogame
+        Flux.deferContextual(ctx -> {
                     var userId = ctx.getOrDefault("userId", "0");
 
                     if (userId.startsWith("1")) {
-                        return Mono.just(videogameForConsole(vg, Console.XBOX));
+                        return Database.findAvailableOn(Console.XBOX);
                     } else if (userId.startsWith("2")) {
-                        return Mono.just(videogameForConsole(vg, Console.PLAYSTATION));
+                        return Database.findAvailableOn(Console.PLAYSTATION);
                     } else {
-                        return Mono.just(false);
+                        return Flux.<Videogame>empty();
                     }
-                }))
+                })
                 // Context always before subscribe
                 .contextWrite(Context.of("userId", "10020"))
                 .subscribe(v -> log.info("Videogame: {} Console: {}", v.getName(), v.getConsole()));
@@ -131,8 +131,4 @@ public class Main {
         Thread.sleep(Duration.ofSeconds(10));
 
     }
-
-    private static boolean videogameForConsole(Videogame videogame, Console console) {
-        return videogame.getConsole() == console || videogame.getConsole() == Console.ALL;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+package com.celada.database;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of a catalog, opened by mapping its columns: startup reads the header and the consoles
+ * for the index, every other page is read when a query touches it.
+ * <p>
+ * A 64 byte header: magic, format version, catalog version, row, review and string counts, dictionary size and
+ * the CRC32C of the body. Then the columns as fixed width little endian sections, widest first so each stays aligned:
+ * prices, discount bits, sales, name and website ids, rows by sales, rows by price, review offsets, comment ids, scores,
+ * dictionary offsets, consoles and the dictionary bytes. Every section is below 2 GiB.
+ */
+final class CatalogFile {
+
+    private static final int MAGIC = 0x43415447;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int STAGING_SIZE = 1 << 20;
+
+    private CatalogFile() {
+    }
+
+    /**
+     * Writes next to the path and moves the file in place once complete, a reader never maps a partial snapshot.
+     */
+    static void write(CatalogSnapshot snapshot, Path path) {
+        ColumnarCatalog columns = snapshot.columns();
+        StringDictionary dictionary = columns.dictionary();
+        Path partial = path.resolveSibling(path.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output output = new Output(channel);
+            output.doubles(columns.prices());
+            output.longs(columns.discounts());
+            output.ints(columns.sales());
+            output.ints(columns.names());
+            output.ints(columns.websites());
+            output.ints(snapshot.index().rowsBySales());
+            output.ints(snapshot.index().rowsByPrice());
+            output.ints(columns.reviewOffsets());
+            output.ints(columns.reviewComments());
+            output.ints(columns.reviewScores());
+            output.ints(dictionary.offsets());
+            output.bytes(columns.consoles());
+            output.bytes(dictionary.bytes());
+            output.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(snapshot.version())
+                    .putInt(columns.size())
+                    .putInt(columns.reviewCount())
+                    .putInt(dictionary.size())
+                    .putInt(dictionary.bytes().limit())
+                    .putLong(output.crc.getValue());
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write catalog snapshot " + path, e);
+        }
+        try {
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write catalog snapshot " + path, e);
+        }
+    }
+
+    /**
+     * @param verify Check the body against its checksum, reading every page once
+     * @return Snapshot over the mapped columns, strings and videogames decoded when read
+     */
+    static CatalogSnapshot open(Path path, boolean verify) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_SIZE) {
+                throw new IllegalStateException("Not a catalog snapshot: " + path);
+            }
+            while (header.hasRemaining()) {
+                channel.read(header, header.position());
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IllegalStateException("Not a catalog snapshot: " + path);
+            }
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalStateException("Unknown catalog snapshot format version " + formatVersion);
+            }
+            long version = header.getLong();
+            int rows = header.getInt();
+            int reviews = header.getInt();
+            int strings = header.getInt();
+            int dictionaryBytes = header.getInt();
+            long checksum = header.getLong();
+
+            Sections sections = new Sections(channel, verify);
+            DoubleBuffer prices = sections.next(rows * (long) Double.BYTES).asDoubleBuffer();
+            LongBuffer discounts = sections.next(ColumnarCatalog.words(rows) * (long) Long.BYTES).asLongBuffer();
+            IntBuffer sales = sections.next(rows * (long) Integer.BYTES).asIntBuffer();
+            IntBuffer names = sections.next(rows * (long) Integer.BYTES).asIntBuffer();
+            IntBuffer websites = sections.next(rows * (long) Integer.BYTES).asIntBuffer();
+            IntBuffer rowsBySales = sections.next(rows * (long) Integer.BYTES).asIntBuffer();
+            IntBuffer rowsByPrice = sections.next(rows * (long) Integer.BYTES).asIntBuffer();
+            IntBuffer reviewOffsets = sections.next((rows + 1L) * Integer.BYTES).asIntBuffer();
+            IntBuffer reviewComments = sections.next(reviews * (long) Integer.BYTES).asIntBuffer();
+            IntBuffer reviewScores = sections.next(reviews * (long) Integer.BYTES).asIntBuffer();
+            IntBuffer dictionaryOffsets = sections.next((strings + 1L) * Integer.BYTES).asIntBuffer();
+            ByteBuffer consoles = sections.next(rows);
+            ByteBuffer dictionary = sections.next(dictionaryBytes);
+
+            if (sections.position != channel.size()) {
+                throw new IllegalStateException("Catalog snapshot " + path + " has " + channel.size() + " bytes, expected " + sections.position);
+            }
+            if (verify && sections.crc.getValue() != checksum) {
+                throw new IllegalStateException("Catalog snapshot " + path + " does not match its checksum");
+            }
+
+            ColumnarCatalog columns = new ColumnarCatalog(rows, prices, discounts, sales, names, websites,
+                    reviewOffsets, reviewComments, reviewScores, consoles, new StringDictionary(dictionaryOffsets, dictionary));
+            return new CatalogSnapshot(version, columns, CatalogIndex.of(columns, rowsBySales, rowsByPrice));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open catalog snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Maps the sections one after another, reading them into the checksum only when verifying.
+     */
+    private static final class Sections {
+
+        private final FileChannel channel;
+        private final boolean verify;
+        private final CRC32C crc;
+        private long position;
+
+        Sections(FileChannel channel, boolean verify) {
+            this.channel = channel;
+            this.verify = verify;
+            this.crc = new CRC32C();
+            this.position = HEADER_SIZE;
+        }
+
+        ByteBuffer next(long length) throws IOException {
+            if (this.position + length > this.channel.size()) {
+                throw new IllegalStateException("Catalog snapshot ends before its columns");
+            }
+            ByteBuffer section = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, length).order(ByteOrder.LITTLE_ENDIAN);
+            this.position += length;
+            if (this.verify) {
+                this.crc.update(section.duplicate());
+            }
+            return section;
+        }
+    }
+
+    /**
+     * Copies the columns through a staging buffer, adding every byte to the checksum on its way out.
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer staging;
+        private final CRC32C crc;
+
+        Output(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.staging = ByteBuffer.allocateDirect(STAGING_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.crc = new CRC32C();
+            this.channel.position(HEADER_SIZE);
+        }
+
+        void doubles(DoubleBuffer values) throws IOException {
+            while (values.hasRemaining()) {
+                int count = Math.min(values.remaining(), this.room(Double.BYTES));
+                this.staging.asDoubleBuffer().put(values.slice(values.position(), count));
+                this.advance(values, count, Double.BYTES);
+            }
+        }
+
+        void longs(LongBuffer values) throws IOException {
+            while (values.hasRemaining()) {
+                int count = Math.min(values.remaining(), this.room(Long.BYTES));
+                this.staging.asLongBuffer().put(values.slice(values.position(), count));
+                this.advance(values, count, Long.BYTES);
+            }
+        }
+
+        void ints(IntBuffer values) throws IOException {
+            while (values.hasRemaining()) {
+                int count = Math.min(values.remaining(), this.room(Integer.BYTES));
+                this.staging.asIntBuffer().put(values.slice(values.position(), count));
+                this.advance(values, count, Integer.BYTES);
+            }
+        }
+
+        void bytes(ByteBuffer values) throws IOException {
+            while (values.hasRemaining()) {
+                int count = Math.min(values.remaining(), this.room(Byte.BYTES));
+                this.staging.put(values.slice(values.position(), count));
+                values.position(values.position() + count);
+            }
+        }
+
+        void flush() throws IOException {
+            this.staging.flip();
+            this.crc.update(this.staging.duplicate());
+            while (this.staging.hasRemaining()) {
+                this.channel.write(this.staging);
+            }
+            this.staging.clear();
+        }
+
+        /**
+         * @return Values of the width that fit in the staging buffer, flushed first if none does
+         */
+        private int room(int width) throws IOException {
+            if (this.staging.remaining() < width) {
+                this.flush();
+            }
+            return this.staging.remaining() / width;
+        }
+
+        private void advance(Buffer values, int count, int width) {
+            values.position(values.position() + count);
+            this.staging.position(this.staging.position() + count * width);
+        }
+    }
+}
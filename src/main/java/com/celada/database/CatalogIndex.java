@@ -0,0 +1,188 @@
+package com.celada.database;
+
+import com.celada.models.Console;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Secondary indexes over the rows of a ColumnarCatalog, so selective queries read the matching rows only.
+ * Rows per console, the discount bitmap, and rows sorted by sales and by price searched in O(log n).
+ * Every query answers its rows in catalog order.
+ */
+public final class CatalogIndex {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final ColumnarCatalog columns;
+    private final Map<Console, int[]> rowsByConsole;
+    // Rows with a console other than DISABLED
+    private final BitSet enabled;
+    // Row ids sorted by the column, the binary search reads the values from the columns
+    private final IntBuffer rowsBySales;
+    private final IntBuffer rowsByPrice;
+
+    private CatalogIndex(ColumnarCatalog columns, Map<Console, int[]> rowsByConsole, BitSet enabled,
+                         IntBuffer rowsBySales, IntBuffer rowsByPrice) {
+        this.columns = columns;
+        this.rowsByConsole = rowsByConsole;
+        this.enabled = enabled;
+        this.rowsBySales = rowsBySales;
+        this.rowsByPrice = rowsByPrice;
+    }
+
+    public static CatalogIndex of(ColumnarCatalog columns) {
+        // Sales and row packed in one long, sorted as primitives, ties keep catalog order
+        int[] rowsBySales = columns.rows()
+                .mapToLong(row -> ((long) columns.totalSold(row) << 32) | row)
+                .sorted()
+                .mapToInt(packed -> (int) packed)
+                .toArray();
+        // Missing prices are NaN and sort last
+        int[] rowsByPrice = columns.rows().boxed()
+                .sorted((a, b) -> Double.compare(columns.price(a), columns.price(b)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        return of(columns, IntBuffer.wrap(rowsBySales), IntBuffer.wrap(rowsByPrice));
+    }
+
+    /**
+     * Index over sort orders already known, only the console lists are built.
+     */
+    static CatalogIndex of(ColumnarCatalog columns, IntBuffer rowsBySales, IntBuffer rowsByPrice) {
+        Map<Console, IntStream.Builder> consoles = new EnumMap<>(Console.class);
+        BitSet enabled = new BitSet(columns.size());
+        for (int row = 0; row < columns.size(); row++) {
+            Console console = columns.console(row);
+            if (console != null) {
+                consoles.computeIfAbsent(console, ignored -> IntStream.builder()).add(row);
+                enabled.set(row, console != Console.DISABLED);
+            }
+        }
+        Map<Console, int[]> rowsByConsole = new EnumMap<>(Console.class);
+        consoles.forEach((console, rows) -> rowsByConsole.put(console, rows.build().toArray()));
+        return new CatalogIndex(columns, rowsByConsole, enabled, rowsBySales, rowsByPrice);
+    }
+
+    /**
+     * @return Rows released exactly for the console
+     */
+    public int[] rowsOn(Console console) {
+        return this.rowsByConsole.getOrDefault(console, NO_ROWS).clone();
+    }
+
+    /**
+     * Rows playable on the console: released for it or for ALL.
+     * ALL answers every row with a console other than DISABLED, and DISABLED answers none.
+     */
+    public int[] rowsAvailableOn(Console console) {
+        return switch (console) {
+            case DISABLED -> NO_ROWS;
+            case ALL -> this.enabled.stream().toArray();
+            default -> merge(this.rowsByConsole.getOrDefault(console, NO_ROWS), this.rowsByConsole.getOrDefault(Console.ALL, NO_ROWS));
+        };
+    }
+
+    public int[] rowsInDiscount() {
+        return this.columns.discountRows();
+    }
+
+    /**
+     * @return Rows with more than the given copies sold, missing sales never match
+     */
+    public int[] rowsSoldMoreThan(int totalSold) {
+        if (totalSold == Integer.MAX_VALUE) {
+            return NO_ROWS;
+        }
+        return this.rowsSoldBetween(totalSold + 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return Rows with sales in [min, max], missing sales never match
+     */
+    public int[] rowsSoldBetween(int min, int max) {
+        int from = this.firstSoldAtLeast(Math.max(min, ColumnarCatalog.MISSING_SALES + 1));
+        int to = max == Integer.MAX_VALUE ? this.rowsBySales.limit() : this.firstSoldAtLeast(max + 1);
+        return inCatalogOrder(this.rowsBySales, from, to);
+    }
+
+    /**
+     * @return Rows priced in [min, max], missing prices never match
+     */
+    public int[] rowsPricedBetween(double min, double max) {
+        int from = this.firstPricedAtLeast(min, false);
+        int to = this.firstPricedAtLeast(max, true);
+        return inCatalogOrder(this.rowsByPrice, from, to);
+    }
+
+    IntBuffer rowsBySales() {
+        return this.rowsBySales.duplicate();
+    }
+
+    IntBuffer rowsByPrice() {
+        return this.rowsByPrice.duplicate();
+    }
+
+    private int firstSoldAtLeast(int totalSold) {
+        int low = 0;
+        int high = this.rowsBySales.limit();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.columns.totalSold(this.rowsBySales.get(middle)) < totalSold) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param after First index priced over the value instead of at least the value
+     */
+    private int firstPricedAtLeast(double price, boolean after) {
+        int low = 0;
+        int high = this.rowsByPrice.limit();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Double.compare(this.columns.price(this.rowsByPrice.get(middle)), price);
+            if (comparison < 0 || (after && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int[] inCatalogOrder(IntBuffer rows, int from, int to) {
+        if (from >= to) {
+            return NO_ROWS;
+        }
+        int[] matches = new int[to - from];
+        rows.get(from, matches);
+        Arrays.sort(matches);
+        return matches;
+    }
+
+    private static int[] merge(int[] first, int[] second) {
+        int[] merged = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < first.length && j < second.length) {
+            merged[k++] = first[i] < second[j] ? first[i++] : second[j++];
+        }
+        while (i < first.length) {
+            merged[k++] = first[i++];
+        }
+        while (j < second.length) {
+            merged[k++] = second[j++];
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,227 @@
+package com.celada.database;
+
+import com.celada.models.Console;
+import com.celada.models.Review;
+import com.celada.models.Videogame;
+import reactor.core.publisher.Flux;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams the videogames of a CSV file, reading it through memory mapped windows so the heap never holds the file.
+ * Only the latest window is read, but a window is unmapped when the garbage collector frees its buffer,
+ * so windows already read stay mapped, taking address space and page cache rather than heap, until a collection.
+ * Rows are parsed one per request, so the file is read as fast as the subscriber asks and never held whole.
+ * <p>
+ * The first line is a header and is skipped. Then one videogame per line:
+ * {@code name,price,console,officialWebsite,isDiscount,totalSold[,comment,score]...}
+ * with its reviews as trailing comment and score pairs. Fields can be quoted as in RFC 4180, empty fields are missing values.
+ * Lines end with LF or CRLF.
+ * Reads block on disk, subscribe on a scheduler that allows it.
+ */
+public final class CatalogLoader {
+
+    static final int DEFAULT_WINDOW = 64 << 20;
+    private static final int FIXED_FIELDS = 6;
+
+    private CatalogLoader() {
+    }
+
+    public static Flux<Videogame> load(Path path) {
+        return load(path, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window Bytes mapped at a time, a row must fit in one
+     */
+    static Flux<Videogame> load(Path path, int window) {
+        return Flux.generate(() -> new CsvReader(path, window), (reader, sink) -> {
+            List<String> fields = reader.next();
+            if (fields == null) {
+                sink.complete();
+            } else {
+                sink.next(toVideogame(fields, reader.line()));
+            }
+            return reader;
+        }, CsvReader::close);
+    }
+
+    private static Videogame toVideogame(List<String> fields, long line) {
+        if (fields.size() < FIXED_FIELDS || (fields.size() - FIXED_FIELDS) % 2 != 0) {
+            throw new IllegalArgumentException("Malformed row at line " + line + ": " + fields.size() + " fields");
+        }
+        try {
+            List<Review> reviews = new ArrayList<>((fields.size() - FIXED_FIELDS) / 2);
+            for (int i = FIXED_FIELDS; i < fields.size(); i += 2) {
+                reviews.add(new Review(fields.get(i), Integer.parseInt(fields.get(i + 1))));
+            }
+            return Videogame.builder()
+                    .name(fields.get(0))
+                    .price(fields.get(1).isEmpty() ? null : Double.parseDouble(fields.get(1)))
+                    .console(fields.get(2).isEmpty() ? null : Console.valueOf(fields.get(2)))
+                    .officialWebsite(fields.get(3).isEmpty() ? null : fields.get(3))
+                    .isDiscount(Boolean.parseBoolean(fields.get(4)))
+                    .totalSold(fields.get(5).isEmpty() ? null : Integer.parseInt(fields.get(5)))
+                    .reviews(List.copyOf(reviews))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed row at line " + line + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Splits records into fields over a window of the file, mapping the next window when a record crosses its end.
+     */
+    private static final class CsvReader implements Closeable {
+
+        private final FileChannel channel;
+        private final long size;
+        private final int windowSize;
+        private MappedByteBuffer window;
+        private long windowStart;
+        // Start of the next record, relative to the window
+        private int position;
+        private long line;
+
+        // Bytes of the field being read, reused for every field
+        private byte[] field;
+        private int fieldLength;
+
+        CsvReader(Path path, int windowSize) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = this.channel.size();
+            this.windowSize = windowSize;
+            this.field = new byte[256];
+            this.map(0);
+            // Header
+            this.next();
+        }
+
+        long line() {
+            return this.line;
+        }
+
+        /**
+         * @return Fields of the next record, null at the end of the file
+         */
+        List<String> next() {
+            while (true) {
+                if (this.windowStart + this.position >= this.size) {
+                    return null;
+                }
+                List<String> fields = this.parse();
+                if (fields != null) {
+                    this.line++;
+                    if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                        // Blank line
+                        continue;
+                    }
+                    return fields;
+                }
+                // Crossed the end of the window, read it again from its start
+                if (this.position == 0) {
+                    throw new IllegalArgumentException("Row at line " + (this.line + 1) + " is larger than " + this.windowSize + " bytes");
+                }
+                this.map(this.windowStart + this.position);
+            }
+        }
+
+        /**
+         * @return Fields of the record at the position, null if the window ends before it does
+         */
+        private List<String> parse() {
+            boolean lastWindow = this.windowStart + this.window.limit() >= this.size;
+            List<String> fields = new ArrayList<>(FIXED_FIELDS);
+            int index = this.position;
+            int limit = this.window.limit();
+            boolean quoted = false;
+            this.fieldLength = 0;
+
+            while (index < limit) {
+                byte current = this.window.get(index++);
+                if (quoted) {
+                    if (current != '"') {
+                        this.append(current);
+                    } else if (index < limit && this.window.get(index) == '"') {
+                        // Escaped quote
+                        this.append(current);
+                        index++;
+                    } else if (index == limit && !lastWindow) {
+                        // The escape may continue in the next window
+                        return null;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (current == '"' && this.fieldLength == 0) {
+                    quoted = true;
+                } else if (current == ',') {
+                    fields.add(this.takeField());
+                } else if (current == '\r' && index == limit && !lastWindow) {
+                    // The \n of a Windows line break may be the first byte of the next window
+                    return null;
+                } else if (current == '\r' && (index == limit || this.window.get(index) == '\n')) {
+                    // Windows line break, the \n or the end of the file ends the record
+                    continue;
+                } else if (current == '\n') {
+                    fields.add(this.takeField());
+                    this.position = index;
+                    return fields;
+                } else {
+                    this.append(current);
+                }
+            }
+            if (!lastWindow) {
+                return null;
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Unterminated quote at line " + (this.line + 1));
+            }
+            // Last record without a line break
+            fields.add(this.takeField());
+            this.position = index;
+            return fields;
+        }
+
+        private void append(byte value) {
+            if (this.fieldLength == this.field.length) {
+                this.field = Arrays.copyOf(this.field, this.field.length * 2);
+            }
+            this.field[this.fieldLength++] = value;
+        }
+
+        private String takeField() {
+            String value = new String(this.field, 0, this.fieldLength, StandardCharsets.UTF_8);
+            this.fieldLength = 0;
+            return value;
+        }
+
+        private void map(long start) {
+            try {
+                this.windowStart = start;
+                this.position = 0;
+                this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(this.windowSize, this.size - start));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
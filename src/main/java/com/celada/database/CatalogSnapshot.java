@@ -0,0 +1,36 @@
+package com.celada.database;
+
+import com.celada.models.Videogame;
+
+import java.util.List;
+
+/**
+ * Catalog as it was at one version, never changes once published.
+ * Holds the videogames by column, scans over the catalog read the columns
+ * and selective queries the index, both built once per version.
+ * Readers of videogames share one object per row, built on its first read.
+ */
+public record CatalogSnapshot(long version, ColumnarCatalog columns, CatalogIndex index) {
+
+    public CatalogSnapshot(long version, List<Videogame> videogames) {
+        this(version, ColumnarCatalog.of(videogames));
+    }
+
+    private CatalogSnapshot(long version, ColumnarCatalog columns) {
+        this(version, columns, CatalogIndex.of(columns));
+    }
+
+    /**
+     * @return Read only view of the videogames in catalog order, the same instances for every reader
+     */
+    public List<Videogame> videogames() {
+        return this.columns.asList();
+    }
+
+    /**
+     * @return Next version with the given videogames
+     */
+    CatalogSnapshot next(List<Videogame> videogames) {
+        return new CatalogSnapshot(this.version + 1, videogames);
+    }
+}
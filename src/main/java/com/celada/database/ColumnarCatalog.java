@@ -0,0 +1,355 @@
+package com.celada.database;
+
+import com.celada.models.Console;
+import com.celada.models.Review;
+import com.celada.models.Videogame;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Catalog stored by column with primitive values, one row per videogame in catalog order.
+ * Scans read the columns they need without unboxing or following references,
+ * a Videogame is only built when a row is materialized.
+ * Rows read as objects are built once and shared by every later reader of the catalog.
+ * Columns are buffers over arrays when built from videogames, or over the pages of a mapped CatalogFile,
+ * and strings are ids in a StringDictionary decoded when read.
+ * Reviews of every row are flattened in two columns, row r owns the reviews from reviewOffsets[r] to reviewOffsets[r + 1].
+ * A missing price is stored as NaN, missing sales as MISSING_SALES and missing reviews as none.
+ */
+public final class ColumnarCatalog {
+
+    public static final int MISSING_SALES = Integer.MIN_VALUE;
+    private static final byte MISSING_CONSOLE = -1;
+    private static final Console[] CONSOLES = Console.values();
+
+    private final int size;
+    private final DoubleBuffer prices;
+    // One bit per row
+    private final LongBuffer discounts;
+    private final IntBuffer sales;
+    private final IntBuffer names;
+    private final IntBuffer websites;
+    private final IntBuffer reviewOffsets;
+    private final IntBuffer reviewComments;
+    private final IntBuffer reviewScores;
+    private final ByteBuffer consoles;
+    private final StringDictionary dictionary;
+    // Built on first read of the catalog as objects
+    private volatile Rows rows;
+
+    ColumnarCatalog(int size, DoubleBuffer prices, LongBuffer discounts, IntBuffer sales, IntBuffer names, IntBuffer websites,
+                    IntBuffer reviewOffsets, IntBuffer reviewComments, IntBuffer reviewScores, ByteBuffer consoles,
+                    StringDictionary dictionary) {
+        this.size = size;
+        this.prices = prices;
+        this.discounts = discounts;
+        this.sales = sales;
+        this.names = names;
+        this.websites = websites;
+        this.reviewOffsets = reviewOffsets;
+        this.reviewComments = reviewComments;
+        this.reviewScores = reviewScores;
+        this.consoles = consoles;
+        this.dictionary = dictionary;
+    }
+
+    public static ColumnarCatalog of(List<Videogame> videogames) {
+        Builder builder = new Builder(videogames.size());
+        videogames.forEach(builder::add);
+        ColumnarCatalog catalog = builder.build();
+        // The videogames are already built, readers get these same instances
+        catalog.rows = new Rows(catalog, videogames);
+        return catalog;
+    }
+
+    /**
+     * @return Builder taking the videogames one row at a time, none of them is kept
+     */
+    static Builder builder() {
+        return new Builder(64);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public IntStream rows() {
+        return IntStream.range(0, this.size);
+    }
+
+    public IntStream rowsWhere(IntPredicate predicate) {
+        return this.rows().filter(predicate);
+    }
+
+    public String name(int row) {
+        return this.dictionary.get(this.names.get(row));
+    }
+
+    public double price(int row) {
+        return this.prices.get(row);
+    }
+
+    public int totalSold(int row) {
+        return this.sales.get(row);
+    }
+
+    public Console console(int row) {
+        byte console = this.consoles.get(row);
+        return console == MISSING_CONSOLE ? null : CONSOLES[console];
+    }
+
+    public boolean isDiscount(int row) {
+        return (this.discounts.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    public int reviewCount() {
+        return this.reviewComments.limit();
+    }
+
+    /**
+     * @param review Index over the reviews of every row, in catalog order
+     */
+    public String reviewComment(int review) {
+        return this.dictionary.get(this.reviewComments.get(review));
+    }
+
+    /**
+     * Sum of the prices of the rows in discount, in catalog order. Walks the discount bits only.
+     */
+    public double sumPricesInDiscount() {
+        double sum = 0.0;
+        for (int word = 0; word < this.discounts.limit(); word++) {
+            for (long bits = this.discounts.get(word); bits != 0; bits &= bits - 1) {
+                sum += this.prices.get((word << 6) + Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Builds the Videogame of the row.
+     */
+    public Videogame materialize(int row) {
+        int from = this.reviewOffsets.get(row);
+        int to = this.reviewOffsets.get(row + 1);
+        List<Review> reviews = new ArrayList<>(to - from);
+        for (int review = from; review < to; review++) {
+            reviews.add(new Review(this.reviewComment(review), this.reviewScores.get(review)));
+        }
+        double price = this.prices.get(row);
+        int totalSold = this.sales.get(row);
+        return Videogame.builder()
+                .name(this.name(row))
+                .price(Double.isNaN(price) ? null : price)
+                .console(this.console(row))
+                .reviews(List.copyOf(reviews))
+                .officialWebsite(this.dictionary.get(this.websites.get(row)))
+                .isDiscount(this.isDiscount(row))
+                .totalSold(totalSold == MISSING_SALES ? null : totalSold)
+                .build();
+    }
+
+    /**
+     * @return Rows in discount, in catalog order
+     */
+    int[] discountRows() {
+        IntStream.Builder rows = IntStream.builder();
+        for (int word = 0; word < this.discounts.limit(); word++) {
+            for (long bits = this.discounts.get(word); bits != 0; bits &= bits - 1) {
+                rows.add((word << 6) + Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return rows.build().toArray();
+    }
+
+    /**
+     * @return Read only rows as videogames, the same list and the same instance of each row on every call
+     */
+    List<Videogame> asList() {
+        Rows current = this.rows;
+        if (current == null) {
+            synchronized (this) {
+                current = this.rows;
+                if (current == null) {
+                    current = new Rows(this, List.of());
+                    this.rows = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Columns as stored, for CatalogFile
+
+    DoubleBuffer prices() {
+        return this.prices.duplicate();
+    }
+
+    LongBuffer discounts() {
+        return this.discounts.duplicate();
+    }
+
+    IntBuffer sales() {
+        return this.sales.duplicate();
+    }
+
+    IntBuffer names() {
+        return this.names.duplicate();
+    }
+
+    IntBuffer websites() {
+        return this.websites.duplicate();
+    }
+
+    IntBuffer reviewOffsets() {
+        return this.reviewOffsets.duplicate();
+    }
+
+    IntBuffer reviewComments() {
+        return this.reviewComments.duplicate();
+    }
+
+    IntBuffer reviewScores() {
+        return this.reviewScores.duplicate();
+    }
+
+    ByteBuffer consoles() {
+        return this.consoles.duplicate();
+    }
+
+    StringDictionary dictionary() {
+        return this.dictionary;
+    }
+
+    static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    /**
+     * Materializes each row on its first read and keeps it, concurrent first reads agree on one instance.
+     */
+    static final class Rows extends AbstractList<Videogame> implements RandomAccess {
+
+        private final ColumnarCatalog columns;
+        private final AtomicReferenceArray<Videogame> materialized;
+
+        private Rows(ColumnarCatalog columns, List<Videogame> built) {
+            this.columns = columns;
+            this.materialized = new AtomicReferenceArray<>(columns.size());
+            for (int row = 0; row < built.size(); row++) {
+                this.materialized.set(row, built.get(row));
+            }
+        }
+
+        @Override
+        public Videogame get(int index) {
+            Videogame videogame = this.materialized.get(index);
+            if (videogame != null) {
+                return videogame;
+            }
+            Videogame built = this.columns.materialize(index);
+            Videogame witness = this.materialized.compareAndExchange(index, null, built);
+            return witness == null ? built : witness;
+        }
+
+        @Override
+        public int size() {
+            return this.columns.size();
+        }
+    }
+
+    /**
+     * Appends each videogame to the columns as it arrives, columns grow by doubling and are trimmed on build.
+     */
+    static final class Builder {
+
+        private final StringDictionary.Builder dictionary = StringDictionary.builder();
+        private int size;
+        private double[] prices;
+        private long[] discounts;
+        private int[] sales;
+        private int[] names;
+        private int[] websites;
+        private int[] reviewOffsets;
+        private byte[] consoles;
+        private int reviews;
+        private int[] reviewComments = new int[64];
+        private int[] reviewScores = new int[64];
+
+        private Builder(int capacity) {
+            int rows = Math.max(1, capacity);
+            this.prices = new double[rows];
+            this.discounts = new long[words(rows)];
+            this.sales = new int[rows];
+            this.names = new int[rows];
+            this.websites = new int[rows];
+            this.reviewOffsets = new int[rows + 1];
+            this.consoles = new byte[rows];
+        }
+
+        Builder add(Videogame videogame) {
+            if (this.size == this.prices.length) {
+                this.grow();
+            }
+            int row = this.size++;
+            this.names[row] = this.dictionary.add(videogame.getName());
+            this.prices[row] = videogame.getPrice() == null ? Double.NaN : videogame.getPrice();
+            this.sales[row] = videogame.getTotalSold() == null ? MISSING_SALES : videogame.getTotalSold();
+            this.consoles[row] = videogame.getConsole() == null ? MISSING_CONSOLE : (byte) videogame.getConsole().ordinal();
+            if (videogame.isDiscount()) {
+                this.discounts[row >>> 6] |= 1L << row;
+            }
+            this.websites[row] = this.dictionary.add(videogame.getOfficialWebsite());
+            this.reviewOffsets[row] = this.reviews;
+            if (videogame.getReviews() != null) {
+                for (Review review : videogame.getReviews()) {
+                    this.addReview(review);
+                }
+            }
+            this.reviewOffsets[row + 1] = this.reviews;
+            return this;
+        }
+
+        ColumnarCatalog build() {
+            return new ColumnarCatalog(this.size, DoubleBuffer.wrap(Arrays.copyOf(this.prices, this.size)),
+                    LongBuffer.wrap(Arrays.copyOf(this.discounts, words(this.size))), IntBuffer.wrap(Arrays.copyOf(this.sales, this.size)),
+                    IntBuffer.wrap(Arrays.copyOf(this.names, this.size)), IntBuffer.wrap(Arrays.copyOf(this.websites, this.size)),
+                    IntBuffer.wrap(Arrays.copyOf(this.reviewOffsets, this.size + 1)),
+                    IntBuffer.wrap(Arrays.copyOf(this.reviewComments, this.reviews)),
+                    IntBuffer.wrap(Arrays.copyOf(this.reviewScores, this.reviews)),
+                    ByteBuffer.wrap(Arrays.copyOf(this.consoles, this.size)), this.dictionary.build());
+        }
+
+        private void addReview(Review review) {
+            if (this.reviews == this.reviewComments.length) {
+                this.reviewComments = Arrays.copyOf(this.reviewComments, this.reviews * 2);
+                this.reviewScores = Arrays.copyOf(this.reviewScores, this.reviews * 2);
+            }
+            this.reviewComments[this.reviews] = this.dictionary.add(review.getComment());
+            this.reviewScores[this.reviews] = review.getScore();
+            this.reviews++;
+        }
+
+        private void grow() {
+            int rows = this.prices.length * 2;
+            this.prices = Arrays.copyOf(this.prices, rows);
+            this.discounts = Arrays.copyOf(this.discounts, words(rows));
+            this.sales = Arrays.copyOf(this.sales, rows);
+            this.names = Arrays.copyOf(this.names, rows);
+            this.websites = Arrays.copyOf(this.websites, rows);
+            this.reviewOffsets = Arrays.copyOf(this.reviewOffsets, rows + 1);
+            this.consoles = Arrays.copyOf(this.consoles, rows);
+        }
+    }
+}
@@ -4,15 +4,141 @@ import com.celada.models.Console;
 import com.celada.models.Review;
 import com.celada.models.Videogame;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Catalog held as an immutable, versioned snapshot.
+ * Readers stream the current snapshot and updates publish a new one with copy on write,
+ * so a reader keeps the version it started with and never sees a half applied change.
+ */
 public class Database {
+
+    private static final AtomicReference<CatalogSnapshot> CATALOG = new AtomicReference<>(new CatalogSnapshot(1, videogames()));
+
+    // Same Flux for every caller, each subscription reads the snapshot current at that moment
+    private static final Flux<Videogame> CATALOG_FLUX = Flux.defer(() -> Flux.fromIterable(CATALOG.get().videogames()));
+
     public static Flux<Videogame> getDataAsFlux() {
-        List<Videogame> videogames = videogames();
-        return Flux.fromIterable(videogames);
+        return CATALOG_FLUX;
+    }
+
+    public static CatalogSnapshot snapshot() {
+        return CATALOG.get();
+    }
+
+    /**
+     * @return Current catalog by column, for scans that only need a few fields
+     */
+    public static ColumnarCatalog columns() {
+        return CATALOG.get().columns();
+    }
+
+    /**
+     * @return Videogames playable on the console, see CatalogIndex.rowsAvailableOn
+     */
+    public static Flux<Videogame> findAvailableOn(Console console) {
+        return find(index -> index.rowsAvailableOn(console));
+    }
+
+    public static Flux<Videogame> findInDiscount() {
+        return find(CatalogIndex::rowsInDiscount);
+    }
+
+    public static Flux<Videogame> findSoldMoreThan(int totalSold) {
+        return find(index -> index.rowsSoldMoreThan(totalSold));
+    }
+
+    public static Flux<Videogame> findPricedBetween(double min, double max) {
+        return find(index -> index.rowsPricedBetween(min, max));
+    }
+
+    /**
+     * Reads only the rows the index answers, from the snapshot current at subscription.
+     */
+    private static Flux<Videogame> find(Function<CatalogIndex, int[]> query) {
+        return Flux.defer(() -> {
+            CatalogSnapshot snapshot = CATALOG.get();
+            return Flux.fromStream(Arrays.stream(query.apply(snapshot.index())).mapToObj(snapshot.videogames()::get));
+        });
+    }
+
+    /**
+     * Replaces the catalog with the videogames of a CSV file, streamed by CatalogLoader.
+     *
+     * @return Published snapshot
+     */
+    public static Mono<CatalogSnapshot> load(Path path) {
+        return CatalogLoader.load(path)
+                // Each row goes to the columns as it is parsed, the videogames are never held together
+                .reduceWith(ColumnarCatalog::builder, ColumnarCatalog.Builder::add)
+                .map(builder -> {
+                    ColumnarCatalog columns = builder.build();
+                    return publish(columns, CatalogIndex.of(columns));
+                });
+    }
+
+    /**
+     * Writes the current catalog as a binary snapshot, see CatalogFile.
+     */
+    public static void writeSnapshot(Path path) {
+        CatalogFile.write(CATALOG.get(), path);
+    }
+
+    /**
+     * Replaces the catalog with a binary snapshot, verified against its checksum.
+     *
+     * @return Published snapshot
+     */
+    public static CatalogSnapshot openSnapshot(Path path) {
+        return openSnapshot(path, true);
+    }
+
+    /**
+     * Replaces the catalog with a binary snapshot mapped in memory, queries decode its pages when they read them.
+     *
+     * @param verify Check the checksum first, reads the whole file so skip it for a fast start on a trusted file
+     * @return Published snapshot
+     */
+    public static CatalogSnapshot openSnapshot(Path path, boolean verify) {
+        CatalogSnapshot opened = CatalogFile.open(path, verify);
+        // Versions keep growing whatever version the file was written at
+        return publish(opened.columns(), opened.index());
+    }
+
+    /**
+     * Publishes the columns as the next version, whatever the current videogames are.
+     */
+    private static CatalogSnapshot publish(ColumnarCatalog columns, CatalogIndex index) {
+        CatalogSnapshot current;
+        CatalogSnapshot next;
+        do {
+            current = CATALOG.get();
+            next = new CatalogSnapshot(current.version() + 1, columns, index);
+        } while (!CATALOG.compareAndSet(current, next));
+        return next;
+    }
+
+    /**
+     * Publishes a new version built from the current videogames, retried if another update wins the race.
+     *
+     * @return Published snapshot
+     */
+    public static CatalogSnapshot update(UnaryOperator<List<Videogame>> change) {
+        CatalogSnapshot current;
+        CatalogSnapshot next;
+        do {
+            current = CATALOG.get();
+            next = current.next(change.apply(current.videogames()));
+        } while (!CATALOG.compareAndSet(current, next));
+        return next;
     }
 
     public static final Videogame DEFAULT_VIDEOGAME = Videogame.builder()
@@ -62,7 +188,7 @@ public class Database {
     );
 
     private static List<Videogame> videogames() {
-        return Arrays.asList(
+        return List.of(
                 Videogame.builder()
                         .name("Forza Horizon 5")
                         .price(50.06)
@@ -0,0 +1,107 @@
+package com.celada.database;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Distinct strings of a catalog by id, as UTF-8 bytes one after another.
+ * String id has the bytes from offsets[id] to offsets[id + 1], MISSING stands for null.
+ * Built dictionaries keep their strings, mapped ones decode a string each time it is read.
+ */
+final class StringDictionary {
+
+    static final int MISSING = -1;
+
+    private final IntBuffer offsets;
+    private final ByteBuffer bytes;
+    // Null when mapped
+    private final String[] strings;
+
+    StringDictionary(IntBuffer offsets, ByteBuffer bytes) {
+        this(offsets, bytes, null);
+    }
+
+    private StringDictionary(IntBuffer offsets, ByteBuffer bytes, String[] strings) {
+        this.offsets = offsets;
+        this.bytes = bytes;
+        this.strings = strings;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    String get(int id) {
+        if (id == MISSING) {
+            return null;
+        }
+        if (this.strings != null) {
+            return this.strings[id];
+        }
+        int from = this.offsets.get(id);
+        byte[] value = new byte[this.offsets.get(id + 1) - from];
+        this.bytes.get(from, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    int size() {
+        return this.offsets.limit() - 1;
+    }
+
+    IntBuffer offsets() {
+        return this.offsets.duplicate();
+    }
+
+    ByteBuffer bytes() {
+        return this.bytes.duplicate();
+    }
+
+    /**
+     * Gives every distinct string one id, in order of arrival.
+     */
+    static final class Builder {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] strings = new String[64];
+        private int[] offsets = new int[65];
+        private byte[] bytes = new byte[1024];
+
+        private Builder() {
+        }
+
+        int add(String value) {
+            if (value == null) {
+                return MISSING;
+            }
+            return this.ids.computeIfAbsent(value, this::append);
+        }
+
+        StringDictionary build() {
+            int size = this.ids.size();
+            return new StringDictionary(IntBuffer.wrap(this.offsets, 0, size + 1).slice(),
+                    ByteBuffer.wrap(this.bytes, 0, this.offsets[size]).slice(),
+                    Arrays.copyOf(this.strings, size));
+        }
+
+        private int append(String value) {
+            int id = this.ids.size();
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            int from = this.offsets[id];
+            if (id == this.strings.length) {
+                this.strings = Arrays.copyOf(this.strings, this.strings.length * 2);
+                this.offsets = Arrays.copyOf(this.offsets, this.strings.length + 1);
+            }
+            if (from + encoded.length > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, from + encoded.length));
+            }
+            System.arraycopy(encoded, 0, this.bytes, from, encoded.length);
+            this.offsets[id + 1] = from + encoded.length;
+            this.strings[id] = value;
+            return id;
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package com.celada.models;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Value;
 
-@Data
-@AllArgsConstructor
+@Value
 public class Review {
-    private String comment;
-    private int score;
+    String comment;
+    int score;
 }
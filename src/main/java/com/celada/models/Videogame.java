@@ -1,18 +1,21 @@
 package com.celada.models;
 
 import lombok.Builder;
-import lombok.Data;
+import lombok.Value;
 
 import java.util.List;
 
-@Data
-@Builder
+/**
+ * Immutable, shared by every reader of a catalog snapshot. Use toBuilder to derive a changed copy.
+ */
+@Value
+@Builder(toBuilder = true)
 public class Videogame {
-    private String name;
-    private Double price;
-    private Console console;
-    private List<Review> reviews;
-    private String officialWebsite;
-    private boolean isDiscount;
-    private Integer totalSold;
+    String name;
+    Double price;
+    Console console;
+    List<Review> reviews;
+    String officialWebsite;
+    boolean isDiscount;
+    Integer totalSold;
 }
@@ -0,0 +1,360 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.config.OverflowConfig;
+import com.celada.notification.system.config.OverflowStrategy;
+import com.celada.notification.system.metrics.Counter;
+import com.celada.notification.system.metrics.MetricsRegistry;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.Priority;
+import com.celada.notification.system.models.PublishResult;
+import com.celada.notification.system.storage.SpillQueue;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Multi-producer entry point in front of a sink.
+ * Producers only offer to a lock-free queue and one of them at a time drains it into the sink,
+ * so the sink never sees concurrent emissions and never answers FAIL_NON_SERIALIZED.
+ * With a worker the queue is drained on it instead, producers return as soon as the event is queued.
+ * The drain stops at the first event the sink has no room for, it stays queued and counted against the capacity
+ * until resume is called, so a slow consumer fills the queue and the overflow strategy engages.
+ * A full queue rejects, drops older low priority events, blocks the producer or spills to disk, as configured.
+ * Once something is spilled every new event is spilled too until the drain empties the spill, so order is kept.
+ */
+@Slf4j
+class IngestionQueue {
+
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final Queue<Queued> queue;
+    // Queued events of each priority, oldest first, only kept to drop older events
+    private final Map<Priority, Queue<Queued>> queuedByPriority;
+    // Events queued and not taken yet by the drain or a drop
+    private final AtomicInteger size;
+    // Work in progress, only the producer moving it from 0 drains
+    private final AtomicInteger wip;
+    private final int capacity;
+    private final Sinks.Many<NotificationEvent> sink;
+    // Whether the consumers behind the sink have room for the event
+    private final Predicate<NotificationEvent> ready;
+    // Null when producers drain
+    private final Scheduler.Worker worker;
+
+    private final OverflowConfig overflow;
+    // Null unless the strategy is SPILL_TO_DISK
+    private final SpillQueue spill;
+    // Taken from the spill by the drain and waiting for room, older than every queued event
+    private volatile NotificationEvent unspilled;
+    // The spill file is gone, lanes finishing their sends no longer resume the drain
+    private volatile boolean closed;
+    // Told about queued events dropped for newer ones
+    private final Consumer<NotificationEvent> dropListener;
+
+    private final Counter rejectedCount;
+    private final Counter blockedCount;
+    private final Counter spilledCount;
+    private final Map<Priority, Counter> droppedCount;
+    private final Map<Sinks.EmitResult, Counter> emitFailureCount;
+
+    IngestionQueue(int capacity, OverflowConfig overflow, SpillQueue spill, Sinks.Many<NotificationEvent> sink,
+                   Predicate<NotificationEvent> ready, MetricsRegistry metrics, Scheduler.Worker worker,
+                   Consumer<NotificationEvent> dropListener) {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queuedByPriority = OverflowStrategy.DROP_OLDEST_LOW_PRIORITY.equals(overflow.getStrategy())
+                ? new EnumMap<>(Priority.class)
+                : null;
+        this.size = new AtomicInteger();
+        this.wip = new AtomicInteger();
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.spill = spill;
+        this.sink = sink;
+        this.ready = ready;
+        this.worker = worker;
+        this.dropListener = dropListener;
+
+        this.rejectedCount = metrics.counter("notification_overflow_total", "result", "rejected");
+        this.blockedCount = metrics.counter("notification_overflow_total", "result", "blocked");
+        this.spilledCount = metrics.counter("notification_overflow_total", "result", "spilled");
+        this.droppedCount = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            this.droppedCount.put(priority, metrics.counter("notification_overflow_total", "result", "dropped", "priority", priority.name()));
+            if (Objects.nonNull(this.queuedByPriority)) {
+                this.queuedByPriority.put(priority, new ConcurrentLinkedQueue<>());
+            }
+        }
+        this.emitFailureCount = new EnumMap<>(Sinks.EmitResult.class);
+        for (Sinks.EmitResult result : Sinks.EmitResult.values()) {
+            if (result.isSuccess()) {
+                continue;
+            }
+            this.emitFailureCount.put(result, metrics.counter("notification_emit_failures_total", "sink", "main", "result", result.name()));
+        }
+    }
+
+    PublishResult offer(NotificationEvent event) {
+        if (this.isSpilling()) {
+            // Behind the spilled events
+            return this.spill(event);
+        }
+        if (this.reserve()) {
+            return this.enqueue(event);
+        }
+
+        return switch (this.overflow.getStrategy()) {
+            case REJECT -> this.reject();
+            case DROP_OLDEST_LOW_PRIORITY -> this.dropOlder(event);
+            case BLOCK -> this.block(event);
+            case SPILL_TO_DISK -> this.spill(event);
+        };
+    }
+
+    int size() {
+        return this.size.get();
+    }
+
+    int spilled() {
+        if (Objects.isNull(this.spill)) {
+            return 0;
+        }
+        return this.spill.size() + (Objects.isNull(this.unspilled) ? 0 : 1);
+    }
+
+    /**
+     * Drains again after the consumers made room, never on the calling thread since it can be emitting into the sink.
+     */
+    void resume() {
+        if (this.closed || (this.size.get() == 0 && !this.isSpilling())) {
+            return;
+        }
+        if (this.wip.getAndIncrement() != 0) {
+            // The drain loops once more
+            return;
+        }
+        if (Objects.isNull(this.worker)) {
+            Schedulers.parallel().schedule(this::drainLoop);
+        } else {
+            this.worker.schedule(this::drainLoop);
+        }
+    }
+
+    void close() {
+        this.closed = true;
+        if (Objects.nonNull(this.spill)) {
+            this.spill.close();
+        }
+    }
+
+    private PublishResult enqueue(NotificationEvent event) {
+        Queued queued = new Queued(event);
+        this.queue.offer(queued);
+        if (Objects.nonNull(this.queuedByPriority) && Objects.nonNull(event.getPriority())) {
+            this.queuedByPriority.get(event.getPriority()).offer(queued);
+        }
+        this.drain();
+        return PublishResult.ACCEPTED;
+    }
+
+    private PublishResult reject() {
+        this.rejectedCount.increment();
+        return PublishResult.REJECTED;
+    }
+
+    /**
+     * Takes the place of the oldest queued LOW event, HIGH events take the place of a MEDIUM one when no LOW is left.
+     */
+    private PublishResult dropOlder(NotificationEvent event) {
+        List<Priority> victimPriorities = Priority.HIGH.equals(event.getPriority())
+                ? List.of(Priority.LOW, Priority.MEDIUM)
+                : List.of(Priority.LOW);
+        for (Priority victimPriority : victimPriorities) {
+            Queue<Queued> victims = this.queuedByPriority.get(victimPriority);
+            Queued victim;
+            while ((victim = victims.poll()) != null) {
+                if (!victim.take()) {
+                    // Drained meanwhile, look again
+                    continue;
+                }
+                // Left on the queue, the drain skips it
+                this.size.decrementAndGet();
+                this.droppedCount.get(victimPriority).increment();
+                this.dropListener.accept(victim.event());
+                if (this.reserve()) {
+                    return this.enqueue(event);
+                }
+            }
+        }
+        return this.reject();
+    }
+
+    private PublishResult block(NotificationEvent event) {
+        this.blockedCount.increment();
+        long deadline = System.nanoTime() + this.overflow.getBlockTimeout().toNanos();
+        while (System.nanoTime() - deadline < 0) {
+            // The producer or worker draining the full queue makes room
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (this.reserve()) {
+                return this.enqueue(event);
+            }
+        }
+        return this.reject();
+    }
+
+    private PublishResult spill(NotificationEvent event) {
+        this.spill.offer(event);
+        this.spilledCount.increment();
+        // The drain goes on to the spill once the queue is empty
+        this.drain();
+        return PublishResult.SPILLED;
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = this.size.get();
+            if (current >= this.capacity) {
+                return false;
+            }
+        } while (!this.size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            // Another producer or the worker is draining, it will pick our event
+            return;
+        }
+
+        if (Objects.isNull(this.worker)) {
+            this.drainLoop();
+        } else {
+            this.worker.schedule(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            // Spilled events are all newer than the queued ones, but a taken one is older than those queued after it
+            if (this.emitUnspilled() && this.drainQueued()) {
+                this.drainSpilled();
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * @return False when the sink has no room for the next queued event
+     */
+    private boolean drainQueued() {
+        Queued queued;
+        while ((queued = this.queue.peek()) != null) {
+            if (queued.isTaken()) {
+                // Dropped for a newer event
+                this.queue.poll();
+                continue;
+            }
+            if (!this.ready.test(queued.event())) {
+                return false;
+            }
+            this.queue.poll();
+            if (!queued.take()) {
+                continue;
+            }
+            this.size.decrementAndGet();
+            this.unindex(queued);
+            this.emit(queued.event());
+        }
+        return true;
+    }
+
+    private void drainSpilled() {
+        if (Objects.isNull(this.spill)) {
+            return;
+        }
+        while (!this.closed && (this.unspilled = this.spill.poll()) != null) {
+            if (!this.emitUnspilled()) {
+                return;
+            }
+        }
+    }
+
+    private boolean emitUnspilled() {
+        NotificationEvent event = this.unspilled;
+        if (Objects.isNull(event)) {
+            return true;
+        }
+        if (!this.ready.test(event)) {
+            return false;
+        }
+        this.unspilled = null;
+        this.emit(event);
+        return true;
+    }
+
+    private boolean isSpilling() {
+        return Objects.nonNull(this.spill) && (Objects.nonNull(this.unspilled) || !this.spill.isEmpty());
+    }
+
+    private void emit(NotificationEvent event) {
+        Sinks.EmitResult result = this.sink.tryEmitNext(event);
+        if (result.isFailure()) {
+            log.error("Event {} accepted but not emitted: {}", event, result);
+            this.emitFailureCount.get(result).increment();
+        }
+    }
+
+    /**
+     * Forgets the taken events at the front of the priority queue of the event, the drain takes them in about that order.
+     */
+    private void unindex(Queued queued) {
+        if (Objects.isNull(this.queuedByPriority) || Objects.isNull(queued.event().getPriority())) {
+            return;
+        }
+        Queue<Queued> queuedOfPriority = this.queuedByPriority.get(queued.event().getPriority());
+        Queued head;
+        while ((head = queuedOfPriority.peek()) != null && head.isTaken()) {
+            // Queued does not override equals, so this removes the head itself
+            queuedOfPriority.remove(head);
+        }
+    }
+
+    /**
+     * Queued event, taken once, either by the drain or by a drop.
+     */
+    private static final class Queued {
+        private final NotificationEvent event;
+        private final AtomicBoolean taken;
+
+        private Queued(NotificationEvent event) {
+            this.event = event;
+            this.taken = new AtomicBoolean();
+        }
+
+        NotificationEvent event() {
+            return this.event;
+        }
+
+        boolean take() {
+            return this.taken.compareAndSet(false, true);
+        }
+
+        boolean isTaken() {
+            return this.taken.get();
+        }
+    }
+}
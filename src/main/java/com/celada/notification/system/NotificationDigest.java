@@ -0,0 +1,215 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.config.DigestConfig;
+import com.celada.notification.system.id.IdGenerator;
+import com.celada.notification.system.metrics.Counter;
+import com.celada.notification.system.metrics.MetricsRegistry;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+import com.celada.notification.system.models.Priority;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Windows the events of the configured priorities per source, by time and count,
+ * and routes one summary event per window in their place.
+ * Only sources with an open window are kept, a window is forgotten as soon as it is flushed.
+ * Delivery results of a summary are handed back to each of its members, so every event keeps its own status.
+ */
+@Slf4j
+class NotificationDigest {
+
+    private final DigestConfig config;
+    private final IdGenerator idGenerator;
+    private final Sinks.Many<NotificationEvent> sink;
+    // Summaries waiting for the result of every channel they were routed to
+    private final Map<String, Digest> digestsById;
+    // Open window of each source, guarded by the digest
+    private final Map<String, Window> windows;
+
+    private Consumer<NotificationEvent> router;
+    private ToIntFunction<NotificationEvent> channels;
+
+    private final Counter digestCount;
+    private final Counter digestedCount;
+
+    NotificationDigest(DigestConfig config, IdGenerator idGenerator, MetricsRegistry metrics) {
+        this.config = config;
+        this.idGenerator = idGenerator;
+        this.sink = Sinks.many().unicast().onBackpressureBuffer();
+        this.digestsById = new ConcurrentHashMap<>();
+        this.windows = new HashMap<>();
+        this.digestCount = metrics.counter("notification_digests_total");
+        this.digestedCount = metrics.counter("notification_digested_events_total");
+    }
+
+    boolean accepts(NotificationEvent event) {
+        return this.config.getPriorities().contains(event.getPriority());
+    }
+
+    /**
+     * Safe to call from many threads, a concurrent emission is retried until the sink takes the event.
+     */
+    Sinks.EmitResult emit(NotificationEvent event) {
+        Sinks.EmitResult result;
+        while (Sinks.EmitResult.FAIL_NON_SERIALIZED.equals(result = this.sink.tryEmitNext(event))) {
+            Thread.onSpinWait();
+        }
+        return result;
+    }
+
+    /**
+     * @param router   Sends the summaries, and events alone in their window, to the lanes
+     * @param channels Lanes an event is routed to, one delivery result is expected from each
+     */
+    void start(Consumer<NotificationEvent> router, ToIntFunction<NotificationEvent> channels) {
+        this.router = router;
+        this.channels = channels;
+        this.sink.asFlux().subscribe(this::add, error -> log.error("Digest stopped", error), this::flushAll);
+    }
+
+    /**
+     * Counts one delivery result of the event.
+     *
+     * @return Members of the event when it is a summary, the event alone otherwise
+     */
+    List<NotificationEvent> membersOf(NotificationEvent event) {
+        Digest digest = this.digestsById.get(event.getId());
+        if (Objects.isNull(digest)) {
+            return List.of(event);
+        }
+        if (digest.remainingResults().decrementAndGet() == 0) {
+            this.digestsById.remove(event.getId());
+        }
+        return digest.members();
+    }
+
+    /**
+     * @return Sources with an open window
+     */
+    synchronized int openWindows() {
+        return this.windows.size();
+    }
+
+    /**
+     * Flushes the open windows.
+     */
+    void close() {
+        this.sink.tryEmitComplete();
+    }
+
+    /**
+     * Opens a window for the source of the event if it has none, flushed once its time is over or it is full.
+     */
+    private void add(NotificationEvent event) {
+        String source = Objects.toString(event.getSource(), "");
+        List<NotificationEvent> full = null;
+        synchronized (this) {
+            Window window = this.windows.get(source);
+            if (window == null) {
+                window = new Window(new ArrayList<>());
+                this.windows.put(source, window);
+                Window opened = window;
+                window.timer = Schedulers.parallel().schedule(() -> this.flush(source, opened),
+                        this.config.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+            window.members.add(event);
+            if (window.members.size() >= this.config.getMaxEvents()) {
+                this.windows.remove(source);
+                window.timer.dispose();
+                full = window.members;
+            }
+        }
+        if (full != null) {
+            this.route(full);
+        }
+    }
+
+    private void flush(String source, Window window) {
+        synchronized (this) {
+            // Flushed full meanwhile, a newer window may be open
+            if (this.windows.get(source) != window) {
+                return;
+            }
+            this.windows.remove(source);
+        }
+        this.route(window.members);
+    }
+
+    private void flushAll() {
+        List<Window> open;
+        synchronized (this) {
+            open = new ArrayList<>(this.windows.values());
+            this.windows.clear();
+        }
+        for (Window window : open) {
+            window.timer.dispose();
+            this.route(window.members);
+        }
+    }
+
+    private void route(List<NotificationEvent> members) {
+        if (members.size() == 1) {
+            this.router.accept(members.get(0));
+            return;
+        }
+        NotificationEvent summary = this.summarize(members);
+        this.digestsById.put(summary.getId(), new Digest(members, new AtomicInteger(this.channels.applyAsInt(summary))));
+        this.digestCount.increment();
+        this.digestedCount.add(members.size());
+        log.info("Digest {} of {} events from {}", summary.getId(), members.size(), summary.getSource());
+        this.router.accept(summary);
+    }
+
+    private NotificationEvent summarize(List<NotificationEvent> members) {
+        // Distinct messages in arrival order with their repetitions, nothing is lost
+        Map<String, Integer> repetitions = new LinkedHashMap<>();
+        members.forEach(member -> repetitions.merge(member.getMessage(), 1, Integer::sum));
+        StringBuilder message = new StringBuilder()
+                .append(members.size()).append(" notifications from ").append(members.get(0).getSource()).append(':');
+        repetitions.forEach((text, count) -> message.append('\n').append(count).append("x ").append(text));
+
+        return NotificationEvent.builder()
+                .id(this.idGenerator.nextId())
+                .source(members.get(0).getSource())
+                .message(message.toString())
+                .priority(members.stream().map(NotificationEvent::getPriority).max(Comparator.naturalOrder()).orElse(Priority.LOW))
+                .timestamp(members.get(members.size() - 1).getTimestamp())
+                .status(NotificationStatus.PENDING)
+                // Bounded by its most urgent member
+                .deadline(members.stream()
+                        .map(NotificationEvent::getDeadline)
+                        .filter(Objects::nonNull)
+                        .min(Comparator.naturalOrder())
+                        .orElse(null))
+                .build();
+    }
+
+    private record Digest(List<NotificationEvent> members, AtomicInteger remainingResults) {
+    }
+
+    private static final class Window {
+        private final List<NotificationEvent> members;
+        // Flushes the window once its time is over
+        private Disposable timer;
+
+        private Window(List<NotificationEvent> members) {
+            this.members = members;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.config.ChannelConfig;
+import com.celada.notification.system.config.DispatchConfig;
+import com.celada.notification.system.config.HedgeConfig;
+import com.celada.notification.system.config.RetryConfig;
+import com.celada.notification.system.dispatch.PriorityLaneQueue;
+import com.celada.notification.system.metrics.Counter;
+import com.celada.notification.system.metrics.LatencyHistogram;
+import com.celada.notification.system.metrics.MetricsRegistry;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.resilience.AdaptiveConcurrencyLimiter;
+import com.celada.notification.system.resilience.CallNotPermittedException;
+import com.celada.notification.system.resilience.CircuitBreaker;
+import com.celada.notification.system.resilience.DeadlineExceededException;
+import com.celada.notification.system.resilience.TrafficBudget;
+import com.celada.notification.system.service.NotificationService;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.context.Context;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Long-lived delivery lane of one channel.
+ * Takes an unbounded stream of events and sends them with the concurrency configured for the channel,
+ * one by one or coalesced in batches when the channel has a batch size.
+ * Waiting events leave by priority with weighted shares when the dispatch is priority ordered,
+ * and sends waiting for the concurrency limit are granted by priority too.
+ * Every call goes through the circuit breaker and the adaptive concurrency limit of the channel.
+ * Sends slower than a percentile of the channel can be hedged with a second attempt, the first success wins.
+ * The deadline of the event travels in the Reactor Context of its delivery, each attempt is bounded by the time left
+ * and an event past its deadline fails with DeadlineExceededException before it takes a worker.
+ * Latency, outcomes, retries and buffered events are recorded on the metrics registry, tagged by channel.
+ */
+@Slf4j
+class NotificationLane {
+
+    // Context key of the Instant an event stops being worth delivering
+    static final String DEADLINE_KEY = "notification.deadline";
+
+    interface DeliveryListener {
+        void onSuccess(NotificationEvent event, String channel);
+
+        void onError(NotificationEvent event, String channel, Throwable error);
+
+        /**
+         * The event left the lane sink, the lane has room for one more.
+         */
+        default void onTaken(NotificationEvent event, String channel) {
+        }
+    }
+
+    @Getter
+    private final String channel;
+    private final NotificationService service;
+    private final ChannelConfig config;
+
+    private final Sinks.Many<NotificationEvent> sink;
+    // Events are only taken from the sink as sends can start
+    private final boolean priorityOrdered;
+
+    // Sheds load while the provider is failing or slow
+    @Getter
+    private final CircuitBreaker circuitBreaker;
+    // Lowers the sends in flight when latency grows
+    @Getter
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    // Shared by every lane
+    private final TrafficBudget retryBudget;
+    // Caps the hedges of this lane, null when hedging is disabled
+    private final TrafficBudget hedgeBudget;
+    // Percentile delay of the hedges, refreshed as sends are measured
+    private volatile long hedgeDelayNanos;
+    private volatile long hedgeDelayRefreshAt;
+    // Runs the blocking sends
+    @Getter
+    private final Scheduler scheduler;
+
+    // Every attempt, retries included
+    private final LatencyHistogram latency;
+    private final Counter sentCount;
+    private final Counter failedCount;
+    private final Counter retryCount;
+    private final Counter hedgeCount;
+    private final Counter expiredCount;
+
+    NotificationLane(String channel, NotificationService service, ChannelConfig config, DispatchConfig dispatch,
+                     TrafficBudget retryBudget, Scheduler scheduler, MetricsRegistry metrics) {
+        this.channel = channel;
+        this.retryBudget = retryBudget;
+        this.scheduler = scheduler;
+        this.service = service;
+        this.config = config;
+        this.circuitBreaker = new CircuitBreaker(channel, config.getCircuitBreaker());
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(config.getConcurrencyLimit(), config.getConcurrency());
+        this.hedgeBudget = config.getHedge().isEnabled()
+                ? new TrafficBudget(config.getHedge().getBudgetRatio(), config.getHedge().getBudgetMaxTokens())
+                : null;
+        this.hedgeDelayRefreshAt = config.getHedge().getMinSamples();
+        // Single subscriber, buffer events while all sends are in flight
+        this.priorityOrdered = dispatch.isPriorityOrdered();
+        this.sink = this.priorityOrdered
+                ? Sinks.many().unicast().onBackpressureBuffer(new PriorityLaneQueue(dispatch))
+                : Sinks.many().unicast().onBackpressureBuffer();
+
+        this.latency = metrics.histogram("notification_send_latency_nanos", "channel", channel);
+        this.sentCount = metrics.counter("notification_sent_total", "channel", channel);
+        this.failedCount = metrics.counter("notification_failed_total", "channel", channel);
+        this.retryCount = metrics.counter("notification_retries_total", "channel", channel);
+        this.hedgeCount = metrics.counter("notification_hedges_total", "channel", channel);
+        this.expiredCount = metrics.counter("notification_expired_total", "channel", channel);
+        metrics.gauge("notification_queue_depth", this::bufferedEvents, "queue", channel);
+        metrics.gauge("notification_in_flight", this.concurrencyLimiter::getInFlight, "channel", channel);
+        metrics.gauge("notification_concurrency_limit", this.concurrencyLimiter::getLimit, "channel", channel);
+    }
+
+    /**
+     * Safe to call from many threads, a concurrent emission is retried until the sink takes the event.
+     */
+    Sinks.EmitResult emit(NotificationEvent event) {
+        Sinks.EmitResult result;
+        while (Sinks.EmitResult.FAIL_NON_SERIALIZED.equals(result = this.sink.tryEmitNext(event))) {
+            // Another shard is emitting, it holds the sink for a few instructions
+            Thread.onSpinWait();
+        }
+        return result;
+    }
+
+    /**
+     * @return Events waiting in the lane sink for a free send
+     */
+    long bufferedEvents() {
+        Integer buffered = Scannable.from(this.sink).scan(Scannable.Attr.BUFFERED);
+        return buffered == null ? 0 : buffered;
+    }
+
+    /**
+     * @return Whether fewer events than the buffer capacity are waiting in the lane sink
+     */
+    boolean hasRoom() {
+        return this.bufferedEvents() < this.config.getBufferCapacity();
+    }
+
+    void start(DeliveryListener listener) {
+        if (this.priorityOrdered) {
+            // A prefetch would hold the events taken ahead in arrival order, a later HIGH event would wait behind them
+            this.deliverAll(this.taken(this.sink.asFlux(), listener), listener);
+        } else {
+            this.start(this.sink.asFlux(), listener);
+        }
+    }
+
+    /**
+     * Delivers the events, requested from upstream prefetch at a time and replenished as sends complete.
+     */
+    Disposable start(Flux<NotificationEvent> events, DeliveryListener listener) {
+        return this.deliverAll(this.taken(events, listener).limitRate(this.config.getPrefetch()), listener);
+    }
+
+    private Flux<NotificationEvent> taken(Flux<NotificationEvent> events, DeliveryListener listener) {
+        return events.doOnNext(event -> listener.onTaken(event, this.channel));
+    }
+
+    /**
+     * Takes one event per send in flight up to the concurrency, sends over the adaptive limit wait for it by priority.
+     */
+    private Disposable deliverAll(Flux<NotificationEvent> events, DeliveryListener listener) {
+        if (this.config.getBatchSize() > 1) {
+            return events
+                    // Flush when the batch is full or the oldest event waited long enough
+                    .bufferTimeout(this.config.getBatchSize(), this.config.getBatchMaxWait(), true)
+                    .flatMap(batch -> this.deliverBatch(batch, listener), this.config.getConcurrency())
+                    .subscribe();
+        }
+
+        return events
+                .flatMap(event -> this.deliver(event, listener), this.config.getConcurrency())
+                .subscribe();
+    }
+
+    private Mono<Boolean> deliver(NotificationEvent event, DeliveryListener listener) {
+        Mono<Boolean> send = this.withinDeadline(this.guarded(this.service.sendNotification(event)
+                .subscribeOn(this.scheduler), rankOf(event)));
+
+        return this.withRetries(this.hedged(send))
+                .doOnSuccess(success -> this.succeeded(event, listener))
+                .doOnError(error -> this.failed(event, error, listener))
+                .onErrorResume(error -> Mono.just(false))
+                .contextWrite(context -> withDeadline(context, event.getDeadline()));
+    }
+
+    private Mono<Boolean> deliverBatch(List<NotificationEvent> batch, DeliveryListener listener) {
+        // The batch waits for the limit with its most urgent event
+        int rank = batch.stream()
+                .mapToInt(NotificationLane::rankOf)
+                .max()
+                .orElse(0);
+        Mono<List<Boolean>> send = this.withinDeadline(this.guarded(this.service.sendNotifications(batch)
+                .subscribeOn(this.scheduler), rank));
+
+        // The batch is bounded by its most urgent event
+        Instant deadline = batch.stream()
+                .map(NotificationEvent::getDeadline)
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+        return this.withRetries(this.hedged(send))
+                .doOnNext(results -> this.notifyBatchResults(batch, results, listener))
+                .doOnError(error -> batch.forEach(event -> this.failed(event, error, listener)))
+                .thenReturn(true)
+                .onErrorResume(error -> Mono.just(false))
+                .contextWrite(context -> withDeadline(context, deadline));
+    }
+
+    /**
+     * Retries on the timer with exponential backoff and jitter, while the error is retryable
+     * and the shared budget has room.
+     */
+    private <T> Mono<T> withRetries(Mono<T> call) {
+        RetryConfig retry = this.config.getRetry();
+        if (retry.getMaxRetries() <= 0) {
+            return call;
+        }
+
+        return Mono.defer(() -> {
+            // Only first attempts are live traffic
+            this.retryBudget.deposit();
+            return call.retryWhen(Retry.backoff(retry.getMaxRetries(), retry.getInitialBackoff())
+                    .maxBackoff(retry.getMaxBackoff())
+                    .jitter(retry.getJitter())
+                    // Time is over for every later attempt too
+                    .filter(error -> !(error instanceof DeadlineExceededException)
+                            && retry.getRetryable().test(error) && this.retryBudget.tryWithdraw())
+                    .doBeforeRetry(signal -> {
+                        this.retryCount.increment();
+                        log.warn("Retry {} on channel {}: {}", signal.totalRetries() + 1, this.channel, signal.failure().getMessage());
+                    })
+                    // Keep the error of the last attempt
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        });
+    }
+
+    /**
+     * Fails at once when the deadline in the context is over, the call is not subscribed and takes no worker.
+     * Otherwise the call is cancelled when the time left runs out.
+     */
+    private <T> Mono<T> withinDeadline(Mono<T> call) {
+        return Mono.deferContextual(context -> {
+            Instant deadline = context.getOrDefault(DEADLINE_KEY, null);
+            if (Objects.isNull(deadline)) {
+                return call;
+            }
+
+            Duration left = Duration.between(Instant.now(), deadline);
+            if (left.isNegative() || left.isZero()) {
+                return Mono.error(new DeadlineExceededException(this.channel));
+            }
+            return call.timeout(left, Mono.error(() -> new DeadlineExceededException(this.channel)));
+        });
+    }
+
+    private static Context withDeadline(Context context, Instant deadline) {
+        return Objects.isNull(deadline) ? context : context.put(DEADLINE_KEY, deadline);
+    }
+
+    /**
+     * Sends a second attempt when the call is still running after the hedge delay, while the hedge budget has room.
+     * The first success wins and the other attempt is left to finish on its own, only one result reaches the listener
+     * so the cache sees a single status change. Both failing gives the error of the first attempt.
+     * The losing attempt keeps its permits until it finishes and records its own outcome, it is never cancelled.
+     */
+    private <T> Mono<T> hedged(Mono<T> call) {
+        if (Objects.isNull(this.hedgeBudget)) {
+            return call;
+        }
+
+        return Mono.defer(() -> {
+            this.hedgeBudget.deposit();
+            long delay = this.hedgeDelayNanos();
+            if (delay <= 0) {
+                return call;
+            }
+
+            // Shared by both branches, cancelling the wait does not cancel the attempt
+            Mono<T> first = call.cache();
+            // Cached too, losing the race must not cancel it into a failure of the breaker and the limit
+            Mono<T> second = call.cache();
+            return first.timeout(Duration.ofNanos(delay), Mono.defer(() -> {
+                if (!this.hedgeBudget.tryWithdraw()) {
+                    return first;
+                }
+                this.hedgeCount.increment();
+                log.debug("Hedging send on channel {} after {} ms", this.channel, TimeUnit.NANOSECONDS.toMillis(delay));
+                return Mono.firstWithValue(first, second)
+                        .onErrorResume(error -> first);
+            }));
+        });
+    }
+
+    /**
+     * @return 0 until the channel has enough measured sends
+     */
+    private long hedgeDelayNanos() {
+        HedgeConfig hedge = this.config.getHedge();
+        long samples = this.latency.count();
+        if (samples < hedge.getMinSamples()) {
+            return 0;
+        }
+        if (samples >= this.hedgeDelayRefreshAt) {
+            // Walking the histogram on every send costs more than the delay moves
+            this.hedgeDelayRefreshAt = samples + hedge.getMinSamples();
+            this.hedgeDelayNanos = Math.max(hedge.getMinDelay().toNanos(), this.latency.percentile(hedge.getPercentile()));
+        }
+        return this.hedgeDelayNanos;
+    }
+
+    /**
+     * Runs the call through the circuit breaker and the concurrency limit, fails fast with
+     * CallNotPermittedException while the breaker is open. Calls of a higher rank wait less for the limit.
+     * A call cancelled once running, at its deadline, is recorded as a failure with the time it was left hanging.
+     */
+    private <T> Mono<T> guarded(Mono<T> call, int rank) {
+        return Mono.defer(() -> {
+            if (!this.circuitBreaker.tryAcquirePermission()) {
+                return Mono.error(new CallNotPermittedException(this.channel));
+            }
+
+            AtomicBoolean started = new AtomicBoolean();
+            return this.concurrencyLimiter.acquire(rank)
+                    .then(Mono.defer(() -> {
+                        started.set(true);
+                        long start = System.nanoTime();
+                        AtomicBoolean recorded = new AtomicBoolean();
+                        return call
+                                .doOnSuccess(value -> this.recordOutcome(recorded, start, false))
+                                .doOnError(error -> this.recordOutcome(recorded, start, true))
+                                .doOnCancel(() -> this.recordOutcome(recorded, start, true));
+                    }))
+                    .doOnCancel(() -> {
+                        // Cancelled while waiting for the limit, the call never ran and has no outcome
+                        if (!started.get()) {
+                            this.circuitBreaker.releasePermission();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Records the outcome of a call once, the call can still fail after it was cancelled.
+     */
+    private void recordOutcome(AtomicBoolean recorded, long start, boolean failed) {
+        if (!recorded.compareAndSet(false, true)) {
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        this.latency.record(latency);
+        if (failed) {
+            this.circuitBreaker.onError(latency);
+            this.concurrencyLimiter.onError(latency);
+        } else {
+            this.circuitBreaker.onSuccess(latency);
+            this.concurrencyLimiter.onSuccess(latency);
+        }
+    }
+
+    /**
+     * @return Rank of the event for the concurrency limit, events without priority wait like LOW
+     */
+    private static int rankOf(NotificationEvent event) {
+        return Objects.isNull(event.getPriority()) ? 0 : event.getPriority().ordinal();
+    }
+
+    private void notifyBatchResults(List<NotificationEvent> batch, List<Boolean> results, DeliveryListener listener) {
+        for (int i = 0; i < batch.size(); i++) {
+            NotificationEvent event = batch.get(i);
+            // Missing results count as failures
+            if (i < results.size() && Boolean.TRUE.equals(results.get(i))) {
+                this.succeeded(event, listener);
+            } else {
+                this.failed(event, new RuntimeException("Notification rejected in batch by " + this.channel), listener);
+            }
+        }
+    }
+
+    private void succeeded(NotificationEvent event, DeliveryListener listener) {
+        this.sentCount.increment();
+        listener.onSuccess(event, this.channel);
+    }
+
+    private void failed(NotificationEvent event, Throwable error, DeliveryListener listener) {
+        if (error instanceof DeadlineExceededException) {
+            this.expiredCount.increment();
+        } else {
+            this.failedCount.increment();
+        }
+        listener.onError(event, this.channel, error);
+    }
+}
@@ -1,193 +1,532 @@
 package com.celada.notification.system;
 
+import com.celada.notification.system.cache.CacheStats;
+import com.celada.notification.system.cache.NotificationCache;
+import com.celada.notification.system.cache.StatusIndex;
+import com.celada.notification.system.config.DeadlineConfig;
+import com.celada.notification.system.config.NotificationSystemConfig;
+import com.celada.notification.system.config.OverflowConfig;
+import com.celada.notification.system.config.OverflowStrategy;
+import com.celada.notification.system.history.NotificationHistory;
+import com.celada.notification.system.history.StatusSubscriptions;
+import com.celada.notification.system.id.IdGenerator;
+import com.celada.notification.system.id.MonotonicIdGenerator;
+import com.celada.notification.system.metrics.MetricsRegistry;
 import com.celada.notification.system.models.NotificationEvent;
 import com.celada.notification.system.models.NotificationStatus;
 import com.celada.notification.system.models.Priority;
+import com.celada.notification.system.models.PublishResult;
+import com.celada.notification.system.resilience.DeadlineExceededException;
+import com.celada.notification.system.resilience.TrafficBudget;
+import com.celada.notification.system.scheduler.SchedulerStrategy;
+import com.celada.notification.system.storage.SpillQueue;
+import com.celada.notification.system.storage.WriteAheadLog;
 import com.celada.notification.system.service.EmailService;
 import com.celada.notification.system.service.NotificationService;
 import com.celada.notification.system.service.PhoneService;
 import com.celada.notification.system.service.TeamsService;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Scannable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
 
 @Slf4j
-public class NotificationSystem {
+public class NotificationSystem implements AutoCloseable {
 
     private static final String TEAMS_CHANNEL = "Teams-Channel";
     private static final String EMAIL_CHANNEL = "Email-Channel";
     private static final String PHONE_CHANNEL = "Phone-Channel";
+    // Wait between offers of a recovered event while the ingestion queue is full
+    private static final long RECOVERY_PARK_NANOS = 100_000;
 
-    private final Sinks.Many<NotificationEvent> mainEventSink;
+    // Latency, outcomes and queue depths, queryable in process or scraped as text
     @Getter
-    private final Sinks.Many<NotificationEvent> historySink;
-
-
-    private final NotificationService teamsService;
-    private final NotificationService emailService;
-    private final NotificationService phoneService;
-
-    private final Sinks.One<NotificationEvent> teamsSink;
-    private final Sinks.One<NotificationEvent> emailSink;
-    private final Sinks.One<NotificationEvent> phoneSink;
-
-    // Simulate cache
-    private final ConcurrentMap<String, NotificationEvent> notificationCache;
+    private final MetricsRegistry metrics;
+
+    private final IdGenerator idGenerator;
+    // Deadline of events published without one
+    private final DeadlineConfig deadlines;
+    // Events of one source always take the same shard, so they reach the lanes in order
+    private final List<Shard> shards;
+    // Runs the pipelines of the shards, null when sharding is disabled
+    private final Scheduler shardScheduler;
+    // Null when the write-ahead log is disabled
+    private final WriteAheadLog writeAheadLog;
+    // Serialized off heap, bounded by bytes and age
+    private final NotificationHistory history;
+    // Status changes of single events and sources, handed only to their subscribers
+    private final StatusSubscriptions subscriptions;
+
+
+    // Null when the digest is disabled
+    private final NotificationDigest digest;
+
+    // Gives each lane the scheduler of its sends, released on close
+    private final SchedulerStrategy schedulerStrategy;
+    private final NotificationLane teamsLane;
+    private final NotificationLane emailLane;
+    private final NotificationLane phoneLane;
+
+    // Bounded by entries and TTL of SENT and EXPIRED events
+    private final NotificationCache notificationCache;
+    // Cached events waiting for delivery or retry, SENT and EXPIRED events are not indexed
+    private final StatusIndex statusIndex;
 
     public NotificationSystem() {
-        // Multiple channel cast
-        // Buffer when subscriber is busy
-        this.mainEventSink = Sinks.many().multicast().onBackpressureBuffer();
-        // Store 50 events on history
-        this.historySink = Sinks.many().replay().limit(50);
+        this(NotificationSystemConfig.defaults());
+    }
 
-        this.teamsService = new TeamsService();
-        this.emailService = new EmailService();
-        this.phoneService = new PhoneService();
+    public NotificationSystem(NotificationSystemConfig config) {
+        this(new TeamsService(), new EmailService(), new PhoneService(), config);
+    }
 
-        this.teamsSink = Sinks.one();
-        this.emailSink = Sinks.one();
-        this.phoneSink = Sinks.one();
+    NotificationSystem(NotificationService teamsService, NotificationService emailService, NotificationService phoneService) {
+        this(teamsService, emailService, phoneService, NotificationSystemConfig.defaults());
+    }
 
-        this.notificationCache = new ConcurrentHashMap<>();
+    NotificationSystem(NotificationService teamsService, NotificationService emailService, NotificationService phoneService,
+                       NotificationSystemConfig config) {
+        this.metrics = new MetricsRegistry();
+        this.idGenerator = config.getIdGenerator();
+        this.deadlines = config.getDeadlines();
+        this.shardScheduler = config.getSharding().isEnabled()
+                ? Schedulers.newParallel("notification-shard", config.getSharding().getShards(), true)
+                : null;
+        this.shards = this.createShards(config);
+        this.metrics.gauge("notification_queue_depth", this::ingestionQueuedEvents, "queue", "ingestion");
+        this.metrics.gauge("notification_queue_depth", this::mainSinkBufferedEvents, "queue", "main");
+        this.metrics.gauge("notification_queue_depth", this::spilledEvents, "queue", "spill");
+        this.writeAheadLog = config.getWal().isEnabled() ? WriteAheadLog.open(config.getWal()) : null;
+        this.history = new NotificationHistory(config.getHistory(), this.metrics);
+        this.subscriptions = new StatusSubscriptions();
+        this.metrics.gauge("notification_watchers", this.subscriptions::size);
+
+        TrafficBudget retryBudget = new TrafficBudget(config.getRetryBudget().getRatio(), config.getRetryBudget().getMaxTokens());
+        this.schedulerStrategy = config.getSchedulerStrategy();
+        // One lane per channel, each one accepts events for the whole life of the system
+        this.teamsLane = new NotificationLane(TEAMS_CHANNEL, teamsService, config.getTeams(), config.getDispatch(), retryBudget,
+                this.schedulerStrategy.schedulerFor(TEAMS_CHANNEL), this.metrics);
+        this.emailLane = new NotificationLane(EMAIL_CHANNEL, emailService, config.getEmail(), config.getDispatch(), retryBudget,
+                this.schedulerStrategy.schedulerFor(EMAIL_CHANNEL), this.metrics);
+        this.phoneLane = new NotificationLane(PHONE_CHANNEL, phoneService, config.getPhone(), config.getDispatch(), retryBudget,
+                this.schedulerStrategy.schedulerFor(PHONE_CHANNEL), this.metrics);
+
+        this.digest = config.getDigest().isEnabled()
+                ? new NotificationDigest(config.getDigest(), this.idGenerator, this.metrics)
+                : null;
+
+        this.statusIndex = new StatusIndex(EnumSet.of(NotificationStatus.PENDING, NotificationStatus.FAILED));
+        this.notificationCache = new NotificationCache(config.getCache(), event -> this.statusIndex.remove(event.getId()));
 
         this.setupProcessingFlows();
+        this.recoverEvents();
     }
 
-    NotificationSystem(NotificationService teamsService, NotificationService emailService, NotificationService phoneService) {
-        // Multiple channel cast
-        // Buffer when subscriber is busy
-        this.mainEventSink = Sinks.many().multicast().onBackpressureBuffer();
-        // Store 50 events on history
-        this.historySink = Sinks.many().replay().limit(50);
+    /**
+     * Safe to call from many threads at the same time.
+     *
+     * @return REJECTED when the ingestion queue is full and the overflow strategy did not take the event,
+     * SPILLED when it waits on disk for the pipeline to catch up
+     */
+    public PublishResult publishEvent(NotificationEvent event) {
+        if (Objects.isNull(event.getStatus())) {
+            event.setId(this.idGenerator.nextId());
+            event.setStatus(NotificationStatus.PENDING);
+        }
+        if (Objects.isNull(event.getDeadline())) {
+            event.setDeadline(Instant.now().plus(this.deadlines.budgetOf(event.getPriority())));
+        }
+        // Logged before anything can change its status
+        if (Objects.nonNull(this.writeAheadLog)) {
+            this.writeAheadLog.appendEvent(event);
+        }
 
-        this.teamsService = teamsService;
-        this.emailService = emailService;
-        this.phoneService = phoneService;
+        PublishResult result = this.shardOf(event).queue().offer(event);
+        if (PublishResult.REJECTED.equals(result)) {
+            log.warn("Event rejected, ingestion queue is full: {}", event);
+            if (Objects.nonNull(this.writeAheadLog)) {
+                this.writeAheadLog.appendDiscard(event.getId());
+            }
+        }
+        return result;
+    }
 
-        this.teamsSink = Sinks.one();
-        this.emailSink = Sinks.one();
-        this.phoneSink = Sinks.one();
+    /**
+     * Stops the shard pipelines, deletes the spill files, flushes the open digest windows, releases the schedulers of the lanes,
+     * completes the history and watch subscribers, flushes and closes the write-ahead log.
+     */
+    @Override
+    public void close() {
+        if (Objects.nonNull(this.shardScheduler)) {
+            this.shardScheduler.dispose();
+        }
+        this.shards.forEach(shard -> shard.queue().close());
+        if (Objects.nonNull(this.digest)) {
+            this.digest.close();
+        }
+        for (NotificationLane lane : List.of(this.teamsLane, this.emailLane, this.phoneLane)) {
+            this.schedulerStrategy.release(lane.getChannel(), lane.getScheduler());
+        }
+        this.history.close();
+        this.subscriptions.close();
+        if (Objects.nonNull(this.writeAheadLog)) {
+            this.writeAheadLog.close();
+        }
+    }
 
-        this.notificationCache = new ConcurrentHashMap<>();
+    /**
+     * Snapshots of every status change in the history retention, followed by the live ones.
+     */
+    public Flux<NotificationEvent> getNotificationsHistory() {
+        return this.history.replay();
+    }
 
-        this.setupProcessingFlows();
+    /**
+     * Snapshots of the status changes of the last window, followed by the live ones.
+     */
+    public Flux<NotificationEvent> getNotificationsHistory(Duration window) {
+        return this.history.replay(window);
     }
 
-    public void publishEvent(NotificationEvent event) {
-        this.mainEventSink.tryEmitNext(event);
+    /**
+     * Latest status of the event when cached, followed by its live status changes.
+     * Completes once the event is SENT or EXPIRED.
+     */
+    public Flux<NotificationEvent> watch(String id) {
+        return this.subscriptions.watch(id, () -> this.notificationCache.peek(id));
     }
 
-    public Flux<NotificationEvent> getNotificationsHistory() {
-        return this.historySink.asFlux();
+    /**
+     * Live status changes of every event of the source.
+     */
+    public Flux<NotificationEvent> watchSource(String source) {
+        return this.subscriptions.watchSource(source);
     }
 
     public Mono<NotificationEvent> getNotificationById(String id) {
         return Mono.justOrEmpty(this.notificationCache.get(id));
     }
 
+    /**
+     * Cached events created in [from, to), in creation order.
+     * Only events with ids of the monotonic generator are found, they carry their creation time.
+     */
+    public Flux<NotificationEvent> getNotificationsCreatedBetween(Instant from, Instant to) {
+        String fromId = MonotonicIdGenerator.lowerBound(from);
+        String toId = MonotonicIdGenerator.lowerBound(to);
+        return Flux.defer(() -> Flux.fromIterable(this.notificationCache.valuesBetween(fromId, toId)))
+                // Ids of other generators can sort inside the range
+                .filter(event -> MonotonicIdGenerator.isValid(event.getId()));
+    }
+
+    public CacheStats getCacheStats() {
+        return this.notificationCache.stats();
+    }
+
+    /**
+     * Publishes again every FAILED event, only failed events are visited.
+     */
     public Flux<NotificationEvent> retryFailedNotification() {
-        return Flux.fromIterable(this.notificationCache.values())
-                .filter(event -> NotificationStatus.FAILED.equals(event.getStatus()))
-                .doOnNext(this::publishEvent);
+        return this.republish(List.copyOf(this.statusIndex.idsWith(NotificationStatus.FAILED)));
+    }
+
+    /**
+     * Paged sweep, publishes again at most maxEvents FAILED events.
+     * Republished events are PENDING again, so the next sweep takes the next page.
+     */
+    public Flux<NotificationEvent> retryFailedNotification(int maxEvents) {
+        return this.republish(this.statusIndex.idsWith(NotificationStatus.FAILED).stream()
+                .limit(maxEvents)
+                .toList());
+    }
+
+    /**
+     * Rate limited sweep, publishes again every FAILED event in groups of batchSize, the first group at once
+     * and then one group per interval.
+     */
+    public Flux<NotificationEvent> retryFailedNotification(int batchSize, Duration interval) {
+        return Flux.defer(() -> Flux.fromIterable(List.copyOf(this.statusIndex.idsWith(NotificationStatus.FAILED))))
+                .buffer(batchSize)
+                // Ticks missed while a group is published are dropped, groups never go out back to back
+                .zipWith(Flux.interval(Duration.ZERO, interval).onBackpressureDrop(), 1, (ids, tick) -> ids)
+                .concatMap(this::republish);
+    }
+
+    /**
+     * Moves each event from FAILED to PENDING before publishing it, an event sent or taken by another sweep
+     * since the ids were read is skipped.
+     */
+    private Flux<NotificationEvent> republish(List<String> ids) {
+        return Flux.fromIterable(ids)
+                .mapNotNull(this.notificationCache::peek)
+                .filter(event -> this.statusIndex.update(event, NotificationStatus.FAILED, NotificationStatus.PENDING))
+                .doOnNext(event -> {
+                    this.notificationCache.put(event.getId(), event);
+                    this.publishEvent(event);
+                });
+    }
+
+    /**
+     * A single shard drained by the publishing threads, or one per configured shard, each one drained by its own worker.
+     */
+    private List<Shard> createShards(NotificationSystemConfig config) {
+        if (Objects.isNull(this.shardScheduler)) {
+            return List.of(this.createShard(config, 0, config.getIngestionCapacity(), null));
+        }
+
+        int count = config.getSharding().getShards();
+        // Split so the events waiting over all the shards stay within the ingestion capacity
+        int capacity = Math.max(1, config.getIngestionCapacity() / count);
+        List<Shard> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // The parallel scheduler hands its workers out round robin, one thread per shard
+            shards.add(this.createShard(config, i, capacity, this.shardScheduler.createWorker()));
+        }
+        return shards;
+    }
+
+    private Shard createShard(NotificationSystemConfig config, int index, int capacity, Scheduler.Worker worker) {
+        // Multiple channel cast
+        // Buffer when subscriber is busy
+        Sinks.Many<NotificationEvent> sink = Sinks.many().multicast().onBackpressureBuffer();
+        OverflowConfig overflow = config.getOverflow();
+        SpillQueue spill = OverflowStrategy.SPILL_TO_DISK.equals(overflow.getStrategy())
+                ? SpillQueue.open(overflow.getSpillDirectory().resolve("shard-" + index + ".spill"))
+                : null;
+        return new Shard(sink, new IngestionQueue(capacity, overflow, spill, sink, this::hasRoomFor, this.metrics, worker,
+                this::dropEvent));
+    }
+
+    private Shard shardOf(NotificationEvent event) {
+        return this.shards.get(Math.floorMod(Objects.hashCode(event.getSource()), this.shards.size()));
     }
 
     private void setupProcessingFlows() {
-        this.mainEventSink.asFlux()
-                .doOnNext(event -> log.info("Processing event: {}", event))
-                .doOnNext(this::updateEventStatus)
-                .doOnNext(this.historySink::tryEmitNext)
-                .subscribe(this::routeEventByPriority);
-
-        this.setupTeamsProcessor();
-        this.setupEmailProcessor();
-        this.setupPhoneProcessor();
-    }
-
-    private void setupTeamsProcessor() {
-        this.teamsSink
-                .asMono()
-                .flatMap(event ->
-                        this.teamsService.sendNotification(event)
-                                .subscribeOn(Schedulers.boundedElastic())
-                                .doOnSuccess(success -> this.updateSuccessStatus(event, TEAMS_CHANNEL))
-                                .doOnError(error -> this.updateErrorStatus(event, TEAMS_CHANNEL, error))
-                                .onErrorResume(error -> Mono.just(false))
-                )
-                .subscribe();
-    }
-
-    private void setupEmailProcessor() {
-        this.emailSink
-                .asMono()
-                .flatMap(event ->
-                        this.emailService.sendNotification(event)
-                                .subscribeOn(Schedulers.boundedElastic())
-                                .doOnSuccess(success -> this.updateSuccessStatus(event, EMAIL_CHANNEL))
-                                .doOnError(error -> this.updateErrorStatus(event, EMAIL_CHANNEL, error))
-                                .onErrorResume(error -> Mono.just(false))
-                )
-                .subscribe();
-    }
-
-    private void setupPhoneProcessor() {
-        this.phoneSink
-                .asMono()
-                .flatMap(event ->
-                        this.phoneService.sendNotification(event)
-                                .subscribeOn(Schedulers.boundedElastic())
-                                .retry(3)
-                                .doOnSuccess(success -> this.updateSuccessStatus(event, PHONE_CHANNEL))
-                                .doOnError(error -> this.updateErrorStatus(event, PHONE_CHANNEL, error))
-                                .onErrorResume(error -> Mono.just(false))
-                )
-                .subscribe();
+        for (Shard shard : this.shards) {
+            shard.sink().asFlux()
+                    .doOnNext(event -> log.info("Processing event: {}", event))
+                    .doOnNext(this::updateEventStatus)
+                    .doOnNext(this::recordChange)
+                    // Dropped here, expired events never reach a lane
+                    .filter(event -> !NotificationStatus.EXPIRED.equals(event.getStatus()))
+                    .subscribe(this::routeOrDigest);
+        }
+
+        if (Objects.nonNull(this.digest)) {
+            this.digest.start(this::routeEventByPriority, NotificationSystem::channelsOf);
+        }
+
+        NotificationLane.DeliveryListener listener = new NotificationLane.DeliveryListener() {
+            @Override
+            public void onSuccess(NotificationEvent event, String channel) {
+                updateSuccessStatus(event, channel);
+            }
+
+            @Override
+            public void onError(NotificationEvent event, String channel, Throwable error) {
+                updateErrorStatus(event, channel, error);
+            }
+
+            @Override
+            public void onTaken(NotificationEvent event, String channel) {
+                shards.forEach(shard -> shard.queue().resume());
+            }
+        };
+
+        this.teamsLane.start(listener);
+        this.emailLane.start(listener);
+        this.phoneLane.start(listener);
     }
 
-    private void updateEventStatus(NotificationEvent event) {
-        if (Objects.isNull(event.getStatus())) {
-            event.setId(UUID.randomUUID().toString());
-            event.setStatus(NotificationStatus.PENDING);
+    private void recoverEvents() {
+        if (Objects.isNull(this.writeAheadLog)) {
+            return;
+        }
+        // PENDING and FAILED events of the previous run
+        this.writeAheadLog.getRecoveredEvents().forEach(this::recoverEvent);
+        // Every recovered event is on the new segments and was taken by a queue
+        this.writeAheadLog.completeRecovery();
+    }
+
+    /**
+     * Offers a recovered event until its queue takes it, it is never discarded: the segments of the previous run
+     * are its only copy until it is appended again.
+     */
+    private void recoverEvent(NotificationEvent event) {
+        this.writeAheadLog.appendEvent(event);
+        Shard shard = this.shardOf(event);
+        while (PublishResult.REJECTED.equals(shard.queue().offer(event))) {
+            // The drain of the shard makes room
+            LockSupport.parkNanos(RECOVERY_PARK_NANOS);
         }
+    }
 
+    /**
+     * Queued event dropped for a newer one, left FAILED so a retry sweep can publish it again.
+     */
+    private void dropEvent(NotificationEvent event) {
+        log.warn("Event dropped from the full ingestion queue: {}", event);
+        this.statusIndex.update(event, NotificationStatus.FAILED);
+        this.logStatus(event);
+        this.notificationCache.put(event.getId(), event);
+        this.recordChange(event);
+    }
+
+    private void updateEventStatus(NotificationEvent event) {
+        if (Objects.nonNull(event.getDeadline()) && !event.getDeadline().isAfter(Instant.now())) {
+            log.warn("Event expired before processing: {}", event);
+            this.statusIndex.update(event, NotificationStatus.EXPIRED);
+            this.logStatus(event);
+        } else {
+            this.statusIndex.update(event, event.getStatus());
+        }
         this.notificationCache.put(event.getId(), event);
     }
 
     private void updateErrorStatus(NotificationEvent event, String channel, Throwable error) {
         log.error("Error sending notification {} to channel {}: {}", event, channel, error);
-        NotificationEvent cachedEvent = this.notificationCache.get(event.getId());
-        if (Objects.nonNull(cachedEvent)) {
-            cachedEvent.setStatus(NotificationStatus.FAILED);
-            this.historySink.tryEmitNext(cachedEvent);
+        NotificationStatus status = error instanceof DeadlineExceededException ? NotificationStatus.EXPIRED : NotificationStatus.FAILED;
+        this.membersOf(event).forEach(member -> this.updateMemberErrorStatus(member, status));
+    }
+
+    private void updateMemberErrorStatus(NotificationEvent event, NotificationStatus status) {
+        NotificationEvent cachedEvent = this.notificationCache.peek(event.getId());
+        // An expired event stays expired and expiring does not undo a delivery
+        if (Objects.nonNull(cachedEvent) && !NotificationStatus.EXPIRED.equals(cachedEvent.getStatus())
+                && !(NotificationStatus.EXPIRED.equals(status) && NotificationStatus.SENT.equals(cachedEvent.getStatus()))) {
+            this.statusIndex.update(cachedEvent, status);
+            this.logStatus(cachedEvent);
+            this.notificationCache.put(cachedEvent.getId(), cachedEvent);
+            this.recordChange(cachedEvent);
         }
     }
 
     private void updateSuccessStatus(NotificationEvent event, String channel) {
         log.info("Notification {} sent to channel {}", event, channel);
-        NotificationEvent cachedEvent = this.notificationCache.get(event.getId());
+        this.membersOf(event).forEach(this::updateMemberSuccessStatus);
+    }
+
+    private void updateMemberSuccessStatus(NotificationEvent event) {
+        NotificationEvent cachedEvent = this.notificationCache.peek(event.getId());
         if (Objects.nonNull(cachedEvent)) {
-            cachedEvent.setStatus(NotificationStatus.SENT);
-            this.historySink.tryEmitNext(cachedEvent);
+            this.statusIndex.update(cachedEvent, NotificationStatus.SENT);
+            this.logStatus(cachedEvent);
+            // Write again to start the TTL of SENT events
+            this.notificationCache.put(cachedEvent.getId(), cachedEvent);
+            this.recordChange(cachedEvent);
         }
     }
 
+    private void recordChange(NotificationEvent event) {
+        this.history.record(event);
+        this.subscriptions.publish(event);
+    }
+
+    private void logStatus(NotificationEvent event) {
+        if (Objects.nonNull(this.writeAheadLog)) {
+            this.writeAheadLog.appendStatus(event.getId(), event.getStatus());
+        }
+    }
+
+    /**
+     * @return Events whose status follows the delivery of the event, its members when it is a digest
+     */
+    private List<NotificationEvent> membersOf(NotificationEvent event) {
+        return Objects.isNull(this.digest) ? List.of(event) : this.digest.membersOf(event);
+    }
+
+    private void routeOrDigest(NotificationEvent event) {
+        if (Objects.nonNull(this.digest) && this.digest.accepts(event)) {
+            Sinks.EmitResult result = this.digest.emit(event);
+            if (result.isFailure()) {
+                this.metrics.counter("notification_emit_failures_total", "sink", "digest", "result", result.name()).increment();
+                this.updateErrorStatus(event, "Digest", new IllegalStateException("Digest rejected event: " + result));
+            }
+            return;
+        }
+        this.routeEventByPriority(event);
+    }
+
+    /**
+     * @return Whether the digest or every lane routeEventByPriority sends the event to can take it now
+     */
+    private boolean hasRoomFor(NotificationEvent event) {
+        if (Objects.nonNull(this.digest) && this.digest.accepts(event)) {
+            return true;
+        }
+        int channels = channelsOf(event);
+        return this.teamsLane.hasRoom()
+                && (channels < 2 || this.emailLane.hasRoom())
+                && (channels < 3 || this.phoneLane.hasRoom());
+    }
+
+    /**
+     * @return Lanes routeEventByPriority sends the event to, only Teams without a priority
+     */
+    private static int channelsOf(NotificationEvent event) {
+        return switch (Objects.requireNonNullElse(event.getPriority(), Priority.LOW)) {
+            case HIGH -> 3;
+            case MEDIUM -> 2;
+            case LOW -> 1;
+        };
+    }
+
     private void routeEventByPriority(NotificationEvent event) {
-        this.teamsSink.tryEmitValue(event);
+        this.emitToLane(this.teamsLane, event);
 
         if (Priority.HIGH.equals(event.getPriority()) || Priority.MEDIUM.equals(event.getPriority())) {
-            this.emailSink.tryEmitValue(event);
+            this.emitToLane(this.emailLane, event);
         }
 
         if (Priority.HIGH.equals(event.getPriority())) {
-            this.phoneSink.tryEmitValue(event);
+            this.emitToLane(this.phoneLane, event);
         }
     }
+
+    private void emitToLane(NotificationLane lane, NotificationEvent event) {
+        Sinks.EmitResult result = lane.emit(event);
+        if (result.isFailure()) {
+            this.metrics.counter("notification_emit_failures_total", "sink", lane.getChannel(), "result", result.name()).increment();
+            this.updateErrorStatus(event, lane.getChannel(), new IllegalStateException("Lane rejected event: " + result));
+        }
+    }
+
+    private long ingestionQueuedEvents() {
+        return this.shards.stream()
+                .mapToLong(shard -> shard.queue().size())
+                .sum();
+    }
+
+    private long spilledEvents() {
+        return this.shards.stream()
+                .mapToLong(shard -> shard.queue().spilled())
+                .sum();
+    }
+
+    private long mainSinkBufferedEvents() {
+        long total = 0;
+        for (Shard shard : this.shards) {
+            Integer buffered = Scannable.from(shard.sink()).scan(Scannable.Attr.BUFFERED);
+            total += buffered == null ? 0 : buffered;
+        }
+        return total;
+    }
+
+    /**
+     * Main sink of a pipeline and the queue letting many threads publish into it.
+     */
+    private record Shard(Sinks.Many<NotificationEvent> sink, IngestionQueue queue) {
+    }
 }
@@ -0,0 +1,12 @@
+package com.celada.notification.system.cache;
+
+import lombok.Value;
+
+@Value
+public class CacheStats {
+    long hits;
+    long misses;
+    long evictions;
+    long expirations;
+    long size;
+}
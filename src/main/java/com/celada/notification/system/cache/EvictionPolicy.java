@@ -0,0 +1,7 @@
+package com.celada.notification.system.cache;
+
+public enum EvictionPolicy {
+    LRU, // Least recently read or written goes first
+    FIFO, // Oldest written goes first
+    SEGMENTED_LRU // LRU split in probation and protected, entries read twice survive bursts of new events
+}
@@ -0,0 +1,287 @@
+package com.celada.notification.system.cache;
+
+import com.celada.notification.system.config.CacheConfig;
+import com.celada.notification.system.models.NotificationEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded cache of notification events.
+ * Split in segments with their own lock, each one evicts by the configured policy once full
+ * and drops SENT and EXPIRED events once their TTL is over.
+ * An ordered index by id, written under the segment locks, answers range reads.
+ */
+public class NotificationCache {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    // Share of a segment kept for entries read more than once on SEGMENTED_LRU
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Segment[] segments;
+    // Every cached event by id, for range reads without visiting the segments
+    private final NavigableMap<String, NotificationEvent> byId;
+    private final long sentTtlNanos;
+    // Told about every event leaving the cache
+    private final Consumer<NotificationEvent> removalListener;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public NotificationCache(CacheConfig config) {
+        this(config, event -> {
+        });
+    }
+
+    public NotificationCache(CacheConfig config, Consumer<NotificationEvent> removalListener) {
+        this.sentTtlNanos = config.getSentTtl().toNanos();
+        this.removalListener = removalListener;
+        this.byId = new ConcurrentSkipListMap<>();
+        int segmentCapacity = Math.max(1, (config.getMaxEntries() + SEGMENTS - 1) / SEGMENTS);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(segmentCapacity, config.getEvictionPolicy());
+        }
+    }
+
+    /**
+     * Lookup counted on the stats, refreshes the entry for LRU policies.
+     */
+    public NotificationEvent get(String id) {
+        NotificationEvent event = this.segmentFor(id).get(id, true);
+        if (event == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return event;
+    }
+
+    /**
+     * Lookup for internal bookkeeping, not counted and not changing the eviction order.
+     */
+    public NotificationEvent peek(String id) {
+        return this.segmentFor(id).get(id, false);
+    }
+
+    /**
+     * Writes the event, starting its TTL when the event reached a terminal status.
+     */
+    public void put(String id, NotificationEvent event) {
+        long expiresAt = event.getStatus() != null && event.getStatus().isTerminal()
+                ? System.nanoTime() + this.sentTtlNanos
+                : Long.MAX_VALUE;
+        this.segmentFor(id).put(new Entry(id, event, expiresAt));
+    }
+
+    public void remove(String id) {
+        this.segmentFor(id).remove(id);
+    }
+
+    /**
+     * @return Copy of the cached events at the moment of the call
+     */
+    public List<NotificationEvent> values() {
+        List<NotificationEvent> values = new ArrayList<>();
+        for (Segment segment : this.segments) {
+            segment.collect(values);
+        }
+        return values;
+    }
+
+    /**
+     * @return Copy of the cached events with an id in [fromId, toId), ordered by id
+     */
+    public List<NotificationEvent> valuesBetween(String fromId, String toId) {
+        if (fromId.compareTo(toId) >= 0) {
+            return List.of();
+        }
+        this.cleanUp();
+        return new ArrayList<>(this.byId.subMap(fromId, toId).values());
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Drops every expired entry, expired entries are otherwise dropped when their segment is used.
+     */
+    public void cleanUp() {
+        for (Segment segment : this.segments) {
+            segment.cleanUp();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), this.expirations.sum(), this.size());
+    }
+
+    private Segment segmentFor(String id) {
+        // Top bits of a multiplicative hash, the low bits pick the bucket inside the segment map
+        return this.segments[(id.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    private record Entry(String id, NotificationEvent event, long expiresAt) {
+        boolean isExpired(long now) {
+            return this.expiresAt != Long.MAX_VALUE && this.expiresAt - now <= 0;
+        }
+    }
+
+    private final class Segment {
+        private final int capacity;
+        private final EvictionPolicy policy;
+        // Only map used by LRU and FIFO, new entries on SEGMENTED_LRU
+        private final LinkedHashMap<String, Entry> probation;
+        // Entries read at least once after written, only on SEGMENTED_LRU
+        private final LinkedHashMap<String, Entry> protectedEntries;
+        private final int protectedCapacity;
+        // Entries with TTL, ordered by expiration because the TTL is the same for all
+        private final ArrayDeque<Entry> expirationQueue;
+
+        Segment(int capacity, EvictionPolicy policy) {
+            this.capacity = capacity;
+            this.policy = policy;
+            // Insertion ordered, recency is kept by writing the entry again so peeks never reorder
+            this.probation = new LinkedHashMap<>();
+            this.protectedEntries = new LinkedHashMap<>();
+            this.protectedCapacity = (int) (capacity * PROTECTED_RATIO);
+            this.expirationQueue = new ArrayDeque<>();
+        }
+
+        synchronized NotificationEvent get(String id, boolean touch) {
+            long now = System.nanoTime();
+            this.expire(now);
+
+            Entry entry = touch ? this.touch(id) : this.lookup(id);
+            return entry == null ? null : entry.event();
+        }
+
+        synchronized void put(Entry entry) {
+            this.expire(System.nanoTime());
+
+            if (this.protectedEntries.containsKey(entry.id())) {
+                moveToEnd(this.protectedEntries, entry);
+            } else if (EvictionPolicy.FIFO.equals(this.policy)) {
+                this.probation.put(entry.id(), entry);
+            } else {
+                moveToEnd(this.probation, entry);
+            }
+            // Under the segment lock, the index sees the writes of an id in order
+            byId.put(entry.id(), entry.event());
+            if (entry.expiresAt() != Long.MAX_VALUE) {
+                this.expirationQueue.offer(entry);
+                if (this.expirationQueue.size() > 2 * this.capacity) {
+                    // Evicted and rewritten entries stay queued until their TTL, drop them before the queue outgrows the segment
+                    this.expirationQueue.removeIf(queued -> this.lookup(queued.id()) != queued);
+                }
+            }
+            this.evict();
+        }
+
+        synchronized void remove(String id) {
+            Entry removed = this.probation.remove(id);
+            if (removed == null) {
+                removed = this.protectedEntries.remove(id);
+            }
+            if (removed != null) {
+                byId.remove(id);
+                removalListener.accept(removed.event());
+            }
+        }
+
+        synchronized void collect(List<NotificationEvent> values) {
+            this.expire(System.nanoTime());
+            this.probation.values().forEach(entry -> values.add(entry.event()));
+            this.protectedEntries.values().forEach(entry -> values.add(entry.event()));
+        }
+
+        synchronized int size() {
+            return this.probation.size() + this.protectedEntries.size();
+        }
+
+        synchronized void cleanUp() {
+            this.expire(System.nanoTime());
+        }
+
+        private Entry lookup(String id) {
+            Entry entry = this.probation.get(id);
+            return entry != null ? entry : this.protectedEntries.get(id);
+        }
+
+        private Entry touch(String id) {
+            if (EvictionPolicy.FIFO.equals(this.policy)) {
+                return this.probation.get(id);
+            }
+            if (EvictionPolicy.LRU.equals(this.policy)) {
+                Entry entry = this.probation.get(id);
+                if (entry != null) {
+                    moveToEnd(this.probation, entry);
+                }
+                return entry;
+            }
+
+            Entry entry = this.protectedEntries.get(id);
+            if (entry != null) {
+                moveToEnd(this.protectedEntries, entry);
+                return entry;
+            }
+            entry = this.probation.remove(id);
+            if (entry != null) {
+                // Promote and demote the least recent protected entry back to probation when full
+                this.protectedEntries.put(id, entry);
+                if (this.protectedEntries.size() > this.protectedCapacity) {
+                    Iterator<Entry> eldest = this.protectedEntries.values().iterator();
+                    Entry demoted = eldest.next();
+                    eldest.remove();
+                    this.probation.put(demoted.id(), demoted);
+                }
+            }
+            return entry;
+        }
+
+        private static void moveToEnd(LinkedHashMap<String, Entry> entries, Entry entry) {
+            entries.remove(entry.id());
+            entries.put(entry.id(), entry);
+        }
+
+        private void evict() {
+            while (this.size() > this.capacity) {
+                Map<String, Entry> victims = this.probation.isEmpty() ? this.protectedEntries : this.probation;
+                Iterator<Entry> eldest = victims.values().iterator();
+                Entry victim = eldest.next();
+                eldest.remove();
+                byId.remove(victim.id());
+                evictions.increment();
+                removalListener.accept(victim.event());
+            }
+        }
+
+        private void expire(long now) {
+            Entry head;
+            while ((head = this.expirationQueue.peek()) != null && head.isExpired(now)) {
+                this.expirationQueue.poll();
+                // Skip entries written again after this one was queued
+                if (this.lookup(head.id()) == head) {
+                    this.remove(head.id());
+                    expirations.increment();
+                }
+            }
+        }
+    }
+}
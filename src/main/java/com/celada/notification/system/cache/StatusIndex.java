@@ -0,0 +1,89 @@
+package com.celada.notification.system.cache;
+
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Secondary index of event ids by status.
+ * Only the given statuses are indexed, so the index grows with them and not with every event seen.
+ */
+public class StatusIndex {
+
+    private final Set<NotificationStatus> indexedStatuses;
+    // Current status of each indexed event, guards the transitions of one event
+    private final ConcurrentMap<String, NotificationStatus> statusById;
+    private final Map<NotificationStatus, Set<String>> idsByStatus;
+
+    public StatusIndex(Set<NotificationStatus> indexedStatuses) {
+        this.indexedStatuses = EnumSet.copyOf(indexedStatuses);
+        this.statusById = new ConcurrentHashMap<>();
+        this.idsByStatus = new EnumMap<>(NotificationStatus.class);
+        for (NotificationStatus status : this.indexedStatuses) {
+            this.idsByStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Sets the status of the event and moves it between indexes in one step.
+     */
+    public void update(NotificationEvent event, NotificationStatus status) {
+        this.statusById.compute(event.getId(), (id, previous) -> this.move(event, previous, status));
+    }
+
+    /**
+     * Sets the status of the event only while it is indexed with the expected one.
+     *
+     * @return False when the event left the expected status first, nothing is changed
+     */
+    public boolean update(NotificationEvent event, NotificationStatus expected, NotificationStatus status) {
+        AtomicBoolean updated = new AtomicBoolean();
+        this.statusById.computeIfPresent(event.getId(), (id, previous) -> {
+            if (!expected.equals(previous)) {
+                return previous;
+            }
+            updated.set(true);
+            return this.move(event, previous, status);
+        });
+        return updated.get();
+    }
+
+    public void remove(String id) {
+        this.statusById.computeIfPresent(id, (key, previous) -> {
+            this.idsByStatus.get(previous).remove(key);
+            return null;
+        });
+    }
+
+    /**
+     * @return Live read-only view of the ids with the status, empty when the status is not indexed
+     */
+    public Set<String> idsWith(NotificationStatus status) {
+        Set<String> ids = this.idsByStatus.get(status);
+        return Objects.isNull(ids) ? Set.of() : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * @return Status kept for the id, null when it is not indexed
+     */
+    private NotificationStatus move(NotificationEvent event, NotificationStatus previous, NotificationStatus status) {
+        if (Objects.nonNull(previous)) {
+            this.idsByStatus.get(previous).remove(event.getId());
+        }
+        event.setStatus(status);
+        if (!this.indexedStatuses.contains(status)) {
+            return null;
+        }
+        this.idsByStatus.get(status).add(event.getId());
+        return status;
+    }
+}
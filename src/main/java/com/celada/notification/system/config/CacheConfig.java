@@ -0,0 +1,20 @@
+package com.celada.notification.system.config;
+
+import com.celada.notification.system.cache.EvictionPolicy;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class CacheConfig {
+    // Entries kept before evicting
+    @Builder.Default
+    int maxEntries = 100_000;
+    // Time a SENT or EXPIRED event stays cached
+    @Builder.Default
+    Duration sentTtl = Duration.ofMinutes(10);
+    @Builder.Default
+    EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+}
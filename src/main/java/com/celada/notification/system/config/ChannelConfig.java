@@ -0,0 +1,37 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class ChannelConfig {
+    // Max sends in flight on the channel at the same time, upper bound of the adaptive limit
+    @Builder.Default
+    int concurrency = 32;
+    // Events the lane requests ahead from its queue, replenished as sends complete.
+    // Priority ordered lanes take events only as sends can start
+    @Builder.Default
+    int prefetch = 32;
+    // Events waiting in the lane for a send before the ingestion queues hold the next ones back
+    @Builder.Default
+    int bufferCapacity = 1024;
+    // Retries with backoff of a failed send
+    @Builder.Default
+    RetryConfig retry = RetryConfig.builder().build();
+    // Events sent together in one provider call, 1 disables batching
+    @Builder.Default
+    int batchSize = 1;
+    // Max time an event waits for its batch to fill up
+    @Builder.Default
+    Duration batchMaxWait = Duration.ofMillis(50);
+    // Second attempt of sends slower than a percentile of the channel
+    @Builder.Default
+    HedgeConfig hedge = HedgeConfig.builder().build();
+    @Builder.Default
+    CircuitBreakerConfig circuitBreaker = CircuitBreakerConfig.builder().build();
+    @Builder.Default
+    ConcurrencyLimitConfig concurrencyLimit = ConcurrencyLimitConfig.builder().build();
+}
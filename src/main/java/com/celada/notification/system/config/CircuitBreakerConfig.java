@@ -0,0 +1,34 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class CircuitBreakerConfig {
+    @Builder.Default
+    boolean enabled = true;
+    // Last calls taken into account for the rates
+    @Builder.Default
+    int windowSize = 100;
+    // Calls needed in the window before the breaker can open
+    @Builder.Default
+    int minimumCalls = 20;
+    // Share of failed calls that opens the breaker
+    @Builder.Default
+    double failureRateThreshold = 0.5;
+    // Calls slower than this count as slow
+    @Builder.Default
+    Duration slowCallDuration = Duration.ofSeconds(5);
+    // Share of slow calls that opens the breaker
+    @Builder.Default
+    double slowCallRateThreshold = 0.8;
+    // Time open before letting trial calls through
+    @Builder.Default
+    Duration openDuration = Duration.ofSeconds(30);
+    // Trial calls on half open that decide to close or open again
+    @Builder.Default
+    int halfOpenCalls = 5;
+}
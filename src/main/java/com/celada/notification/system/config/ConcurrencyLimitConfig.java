@@ -0,0 +1,23 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class ConcurrencyLimitConfig {
+    @Builder.Default
+    boolean enabled = true;
+    @Builder.Default
+    int initialLimit = 10;
+    @Builder.Default
+    int minLimit = 1;
+    // Calls slower than this shrink the limit
+    @Builder.Default
+    Duration latencyThreshold = Duration.ofSeconds(2);
+    // Multiplier applied to the limit on a slow or failed call
+    @Builder.Default
+    double backoffRatio = 0.9;
+}
@@ -0,0 +1,31 @@
+package com.celada.notification.system.config;
+
+import com.celada.notification.system.models.Priority;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Objects;
+
+@Value
+@Builder(toBuilder = true)
+public class DeadlineConfig {
+    // Time from publish an event of each priority is still worth delivering, unless the publisher sets its deadline
+    @Builder.Default
+    Duration high = Duration.ofMinutes(1);
+    @Builder.Default
+    Duration medium = Duration.ofMinutes(5);
+    @Builder.Default
+    Duration low = Duration.ofMinutes(15);
+
+    /**
+     * @param priority Null is budgeted like LOW, the way its events are routed
+     */
+    public Duration budgetOf(Priority priority) {
+        return switch (Objects.requireNonNullElse(priority, Priority.LOW)) {
+            case HIGH -> this.high;
+            case MEDIUM -> this.medium;
+            case LOW -> this.low;
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package com.celada.notification.system.config;
+
+import com.celada.notification.system.models.Priority;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Value
+@Builder(toBuilder = true)
+public class DigestConfig {
+    @Builder.Default
+    boolean enabled = false;
+    // Events of these priorities are summarized per source instead of sent one by one
+    @Builder.Default
+    Set<Priority> priorities = Set.of(Priority.LOW);
+    // Max time the first event of a window waits for its summary
+    @Builder.Default
+    Duration window = Duration.ofMinutes(1);
+    // Events that close a window before its time is over
+    @Builder.Default
+    int maxEvents = 500;
+}
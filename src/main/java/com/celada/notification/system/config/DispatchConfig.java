@@ -0,0 +1,19 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class DispatchConfig {
+    // False keeps lanes in arrival order
+    @Builder.Default
+    boolean priorityOrdered = true;
+    // Events taken from each priority per round while all of them are waiting, LOW never starves
+    @Builder.Default
+    int highWeight = 8;
+    @Builder.Default
+    int mediumWeight = 3;
+    @Builder.Default
+    int lowWeight = 1;
+}
@@ -0,0 +1,28 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class HedgeConfig {
+    @Builder.Default
+    boolean enabled = false;
+    // Latency of the channel after which a second attempt is sent, 0.95 hedges the slowest 5%
+    @Builder.Default
+    double percentile = 0.95;
+    // Sends measured before hedging starts, the percentile is noise until then
+    @Builder.Default
+    int minSamples = 100;
+    // Floor of the hedge delay, keeps fast channels from hedging on jitter
+    @Builder.Default
+    Duration minDelay = Duration.ofMillis(5);
+    // Hedges allowed per send, 0.05 caps the extra load to 5%
+    @Builder.Default
+    double budgetRatio = 0.05;
+    // Hedges saved up for bursts, also available at startup
+    @Builder.Default
+    int budgetMaxTokens = 10;
+}
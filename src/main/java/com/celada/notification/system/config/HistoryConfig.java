@@ -0,0 +1,17 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class HistoryConfig {
+    // Max off-heap bytes of the ring buffer, it grows up to them and then overwrites the oldest entries
+    @Builder.Default
+    int capacityBytes = 64 * 1024 * 1024;
+    // Entries older than this are dropped even when there is room left
+    @Builder.Default
+    Duration retention = Duration.ofHours(1);
+}
@@ -0,0 +1,58 @@
+package com.celada.notification.system.config;
+
+import com.celada.notification.system.id.IdGenerator;
+import com.celada.notification.system.scheduler.SchedulerStrategy;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class NotificationSystemConfig {
+    // Ids of new events, time ordered by default so the cache can be scanned by creation time
+    @Builder.Default
+    IdGenerator idGenerator = IdGenerator.monotonic();
+    // Deadline of events published without one, by priority
+    @Builder.Default
+    DeadlineConfig deadlines = DeadlineConfig.builder().build();
+    // Events waiting to enter the pipeline before publishEvent rejects
+    @Builder.Default
+    int ingestionCapacity = 65_536;
+    // What publishEvent does with an event while the ingestion queue is full
+    @Builder.Default
+    OverflowConfig overflow = OverflowConfig.builder().build();
+    // Spreads ingestion and status bookkeeping over one pipeline per core, split by source
+    @Builder.Default
+    ShardConfig sharding = ShardConfig.builder().build();
+    // Durable log of published events, replayed on startup
+    @Builder.Default
+    WalConfig wal = WalConfig.builder().build();
+    // Status changes kept for late subscribers
+    @Builder.Default
+    HistoryConfig history = HistoryConfig.builder().build();
+    @Builder.Default
+    CacheConfig cache = CacheConfig.builder().build();
+    // Summarizes chatty sources instead of sending each of their events
+    @Builder.Default
+    DigestConfig digest = DigestConfig.builder().build();
+    // Order events leave each lane
+    @Builder.Default
+    DispatchConfig dispatch = DispatchConfig.builder().build();
+    @Builder.Default
+    ChannelConfig teams = ChannelConfig.builder().build();
+    @Builder.Default
+    ChannelConfig email = ChannelConfig.builder().build();
+    @Builder.Default
+    ChannelConfig phone = ChannelConfig.builder()
+            .retry(RetryConfig.builder().maxRetries(3).build())
+            .build();
+    // Where the blocking sends of each channel run, the channel concurrency still caps the sends in flight
+    @Builder.Default
+    SchedulerStrategy schedulerStrategy = SchedulerStrategy.boundedElastic();
+    // Shared by every channel, caps retries to a share of the live calls
+    @Builder.Default
+    RetryBudgetConfig retryBudget = RetryBudgetConfig.builder().build();
+
+    public static NotificationSystemConfig defaults() {
+        return NotificationSystemConfig.builder().build();
+    }
+}
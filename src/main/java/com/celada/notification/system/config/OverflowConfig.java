@@ -0,0 +1,20 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class OverflowConfig {
+    @Builder.Default
+    OverflowStrategy strategy = OverflowStrategy.REJECT;
+    // Max time BLOCK holds the producer
+    @Builder.Default
+    Duration blockTimeout = Duration.ofMillis(100);
+    // Where SPILL_TO_DISK keeps one file per shard
+    @Builder.Default
+    Path spillDirectory = Path.of("notification-spill");
+}
@@ -0,0 +1,15 @@
+package com.celada.notification.system.config;
+
+/**
+ * What publishEvent does with an event when the ingestion queue is full.
+ */
+public enum OverflowStrategy {
+    // Gives back REJECTED
+    REJECT,
+    // Drops the oldest queued LOW event for it, HIGH events drop MEDIUM ones when there is no LOW left, HIGH is never dropped
+    DROP_OLDEST_LOW_PRIORITY,
+    // Waits for room up to the block timeout, then gives back REJECTED
+    BLOCK,
+    // Appends it to a queue on disk, drained in order once the pipeline catches up
+    SPILL_TO_DISK
+}
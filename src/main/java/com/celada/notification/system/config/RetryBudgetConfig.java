@@ -0,0 +1,15 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class RetryBudgetConfig {
+    // Retries allowed per live call, 0.2 caps retries to 20% of the traffic
+    @Builder.Default
+    double ratio = 0.2;
+    // Retries saved up for bursts, also available at startup
+    @Builder.Default
+    int maxTokens = 100;
+}
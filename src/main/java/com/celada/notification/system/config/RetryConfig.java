@@ -0,0 +1,27 @@
+package com.celada.notification.system.config;
+
+import com.celada.notification.system.resilience.CallNotPermittedException;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+@Value
+@Builder(toBuilder = true)
+public class RetryConfig {
+    // Retries after the first attempt, 0 disables retries
+    @Builder.Default
+    long maxRetries = 2;
+    // Delay before the first retry, doubles on every retry
+    @Builder.Default
+    Duration initialBackoff = Duration.ofMillis(200);
+    @Builder.Default
+    Duration maxBackoff = Duration.ofSeconds(5);
+    // Share of the delay randomized, from 0 to 1
+    @Builder.Default
+    double jitter = 0.5;
+    // An open breaker is not worth retrying
+    @Builder.Default
+    Predicate<Throwable> retryable = error -> !(error instanceof CallNotPermittedException);
+}
@@ -0,0 +1,20 @@
+package com.celada.notification.system.config;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Shards keep the events of a source in order up to the channel lanes only.
+ * A lane sends up to its concurrency events at the same time, so sends of one source can complete out of order,
+ * set the concurrency of a channel to 1 when its provider must see the events of a source in publish order.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ShardConfig {
+    // Disabled runs the single pipeline on the publishing thread
+    @Builder.Default
+    boolean enabled = false;
+    // Independent pipelines, events of one source always go to the same one
+    @Builder.Default
+    int shards = Runtime.getRuntime().availableProcessors();
+}
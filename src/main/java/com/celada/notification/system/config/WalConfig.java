@@ -0,0 +1,31 @@
+package com.celada.notification.system.config;
+
+import com.celada.notification.system.storage.FsyncMode;
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class WalConfig {
+    @Builder.Default
+    boolean enabled = false;
+    @Builder.Default
+    Path directory = Path.of("notification-wal");
+    // Bytes of each memory mapped segment file
+    @Builder.Default
+    int segmentSize = 64 * 1024 * 1024;
+    // Sealed segments kept before the events still live on the oldest are moved to the current one
+    @Builder.Default
+    int maxSealedSegments = 16;
+    @Builder.Default
+    FsyncMode fsyncMode = FsyncMode.BATCH;
+    // Max time between fsyncs of appended records
+    @Builder.Default
+    Duration fsyncInterval = Duration.ofMillis(10);
+    // Appended records that trigger an fsync before the interval is over
+    @Builder.Default
+    int fsyncEveryRecords = 1_000;
+}
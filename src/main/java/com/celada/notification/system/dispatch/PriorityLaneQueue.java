@@ -0,0 +1,117 @@
+package com.celada.notification.system.dispatch;
+
+import com.celada.notification.system.config.DispatchConfig;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.Priority;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Lane buffer taking events by priority with weighted shares.
+ * On every round each priority can give as many events as its weight, HIGH first,
+ * so HIGH events overtake queued LOW events while LOW still gets its share during a flood.
+ * Safe for one producer and one consumer at the same time, the way a unicast sink uses it.
+ */
+public class PriorityLaneQueue extends AbstractQueue<NotificationEvent> {
+
+    // Indexed by Priority ordinal
+    private final Queue<NotificationEvent>[] queues;
+    private final int[] weights;
+    // Events left on the current round, only touched by the consumer
+    private final int[] credits;
+    private final AtomicInteger size;
+
+    @SuppressWarnings("unchecked")
+    public PriorityLaneQueue(DispatchConfig config) {
+        Priority[] priorities = Priority.values();
+        this.queues = new Queue[priorities.length];
+        this.weights = new int[priorities.length];
+        for (Priority priority : priorities) {
+            this.queues[priority.ordinal()] = new ConcurrentLinkedQueue<>();
+            this.weights[priority.ordinal()] = Math.max(1, weightOf(config, priority));
+        }
+        this.credits = this.weights.clone();
+        this.size = new AtomicInteger();
+    }
+
+    @Override
+    public boolean offer(NotificationEvent event) {
+        this.queues[priorityOf(event).ordinal()].offer(event);
+        this.size.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public NotificationEvent poll() {
+        if (this.size.get() == 0) {
+            return null;
+        }
+
+        int index = this.nextIndex();
+        if (index < 0) {
+            return null;
+        }
+        this.credits[index]--;
+        this.size.decrementAndGet();
+        return this.queues[index].poll();
+    }
+
+    @Override
+    public NotificationEvent peek() {
+        int index = this.nextIndex();
+        return index < 0 ? null : this.queues[index].peek();
+    }
+
+    @Override
+    public int size() {
+        return this.size.get();
+    }
+
+    @Override
+    public Iterator<NotificationEvent> iterator() {
+        Stream<NotificationEvent> events = Stream.empty();
+        for (int index = this.queues.length - 1; index >= 0; index--) {
+            events = Stream.concat(events, this.queues[index].stream());
+        }
+        return events.iterator();
+    }
+
+    /**
+     * @return Priority ordinal to take from, -1 when empty
+     */
+    private int nextIndex() {
+        int index = this.highestWithCredit();
+        if (index < 0) {
+            // Every waiting priority used its share, new round
+            System.arraycopy(this.weights, 0, this.credits, 0, this.weights.length);
+            index = this.highestWithCredit();
+        }
+        return index;
+    }
+
+    private int highestWithCredit() {
+        for (int index = this.queues.length - 1; index >= 0; index--) {
+            if (this.credits[index] > 0 && !this.queues[index].isEmpty()) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static Priority priorityOf(NotificationEvent event) {
+        return event.getPriority() == null ? Priority.LOW : event.getPriority();
+    }
+
+    private static int weightOf(DispatchConfig config, Priority priority) {
+        return switch (priority) {
+            case HIGH -> config.getHighWeight();
+            case MEDIUM -> config.getMediumWeight();
+            case LOW -> config.getLowWeight();
+        };
+    }
+}
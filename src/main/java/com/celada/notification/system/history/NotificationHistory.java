@@ -0,0 +1,390 @@
+package com.celada.notification.system.history;
+
+import com.celada.notification.system.config.HistoryConfig;
+import com.celada.notification.system.metrics.Counter;
+import com.celada.notification.system.metrics.MetricsRegistry;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.storage.NotificationEventCodec;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * History of notification events kept serialized in an off-heap ring buffer.
+ * Every entry is a snapshot of the event when it was recorded, the oldest entries are dropped
+ * once the buffer is full or their age is over the retention, and are only decoded when a subscriber reads them.
+ * The buffer starts small and doubles up to the configured capacity before dropping entries for room.
+ * Recording threads only encode and queue their entry, one of them at a time appends the queued entries to the buffer
+ * and then wakes up the subscribers.
+ * Every subscriber reads the buffer through its own cursor, only as fast as it requests, so a slow subscriber holds
+ * no copies of its own: once it falls behind the oldest entry it skips to it and the skipped entries are counted.
+ */
+@Slf4j
+public class NotificationHistory {
+
+    // [int length][long sequence][long epochMillis][payload]
+    private static final int SEQUENCE_OFFSET = Integer.BYTES;
+    private static final int TIME_OFFSET = SEQUENCE_OFFSET + Long.BYTES;
+    private static final int HEADER_SIZE = TIME_OFFSET + Long.BYTES;
+    // Written where an entry did not fit before the end of the buffer
+    private static final int WRAP = -1;
+    private static final int INITIAL_CAPACITY = 1024 * 1024;
+
+    private final int maxCapacity;
+    private final long retentionMillis;
+    private final Clock clock;
+    // Appends, evictions and reads of the buffer
+    private final ReentrantLock lock;
+    // Following the buffer, each one at its own cursor
+    private final List<Subscriber> subscribers;
+    // Encoded entries waiting to be appended
+    private final Queue<PendingEntry> pending;
+    // Work in progress, only the thread moving it from 0 appends
+    private final AtomicInteger wip;
+    // Entries overwritten before a lagging subscriber read them
+    private final Counter laggedEntries;
+    // Subscribers complete once they read the last entry
+    private volatile boolean closed;
+
+    private ByteBuffer buffer;
+    private int capacity;
+    // Bumped every time the buffer grows and entries move
+    private int generation;
+    // Offset of the oldest entry
+    private int head;
+    // Offset of the next entry
+    private int tail;
+    // Bytes from head to tail, including the unused end of the buffer when wrapped
+    private int used;
+    private long firstSequence;
+    private long nextSequence;
+
+    public NotificationHistory(HistoryConfig config, MetricsRegistry metrics) {
+        this(config, Clock.systemUTC(), metrics);
+    }
+
+    NotificationHistory(HistoryConfig config, Clock clock, MetricsRegistry metrics) {
+        this.maxCapacity = config.getCapacityBytes();
+        this.capacity = Math.min(INITIAL_CAPACITY, this.maxCapacity);
+        this.buffer = ByteBuffer.allocateDirect(this.capacity);
+        this.retentionMillis = config.getRetention().toMillis();
+        this.clock = clock;
+        this.lock = new ReentrantLock();
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.wip = new AtomicInteger();
+        this.laggedEntries = metrics.counter("notification_history_lagged_total");
+    }
+
+    /**
+     * Stores a snapshot of the event and hands it to the live subscribers.
+     * Safe to call from many threads at the same time, never waits for another recording thread.
+     */
+    public void record(NotificationEvent event) {
+        byte[] payload = NotificationEventCodec.encode(event);
+        if (HEADER_SIZE + payload.length > this.maxCapacity) {
+            log.warn("Event larger than the history buffer, not recorded: {}", event.getId());
+            return;
+        }
+
+        this.pending.offer(new PendingEntry(payload, this.clock.millis()));
+        this.drain();
+    }
+
+    /**
+     * Every entry in the retention window followed by the live ones.
+     */
+    public Flux<NotificationEvent> replay() {
+        return this.replay(Duration.ofMillis(this.retentionMillis));
+    }
+
+    /**
+     * Entries recorded in the last window followed by the live ones, without gaps or duplicates between both.
+     */
+    public Flux<NotificationEvent> replay(Duration window) {
+        return Flux.<byte[]>create(sink -> {
+                    long since = this.clock.millis() - Math.min(window.toMillis(), this.retentionMillis);
+                    Cursor cursor;
+                    this.lock.lock();
+                    try {
+                        cursor = new Cursor(this.firstSequence, this.head, this.generation, since);
+                    } finally {
+                        this.lock.unlock();
+                    }
+
+                    Subscriber subscriber = new Subscriber(sink, cursor);
+                    this.subscribers.add(subscriber);
+                    sink.onRequest(requested -> this.pump(subscriber));
+                    sink.onDispose(() -> this.subscribers.remove(subscriber));
+                })
+                .map(payload -> NotificationEventCodec.decode(ByteBuffer.wrap(payload)));
+    }
+
+    /**
+     * @return Entries in the buffer
+     */
+    public long size() {
+        this.lock.lock();
+        try {
+            return this.nextSequence - this.firstSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Completes every subscriber once it read the entries recorded so far.
+     */
+    public void close() {
+        this.closed = true;
+        this.subscribers.forEach(this::pump);
+    }
+
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            // Another thread is appending, it will pick our entry
+            return;
+        }
+
+        int missed = 1;
+        do {
+            this.lock.lock();
+            try {
+                PendingEntry entry;
+                while ((entry = this.pending.poll()) != null) {
+                    this.append(entry);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            // Outside the lock, subscribers with room read the new entries
+            this.subscribers.forEach(this::pump);
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Hands the subscriber the entries it has requested and not read yet, completes it when the history is closed
+     * and it read the last one. Called by the recording and the requesting threads, one of them at a time reads.
+     */
+    private void pump(Subscriber subscriber) {
+        if (subscriber.wip().getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            FluxSink<byte[]> sink = subscriber.sink();
+            while (sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                byte[] payload = this.read(subscriber.cursor());
+                if (payload == null) {
+                    break;
+                }
+                sink.next(payload);
+            }
+            if (this.closed && this.isCaughtUp(subscriber.cursor())) {
+                sink.complete();
+            }
+            missed = subscriber.wip().addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private boolean isCaughtUp(Cursor cursor) {
+        this.lock.lock();
+        try {
+            return cursor.sequence >= this.nextSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void append(PendingEntry entry) {
+        int length = HEADER_SIZE + entry.payload().length;
+        this.evictExpired(entry.recordedAt());
+        int position = this.reserve(length);
+        this.buffer.putInt(position, length);
+        this.buffer.putLong(position + SEQUENCE_OFFSET, this.nextSequence);
+        this.buffer.putLong(position + TIME_OFFSET, entry.recordedAt());
+        this.buffer.put(position + HEADER_SIZE, entry.payload());
+        this.nextSequence++;
+    }
+
+    /**
+     * Copies out the next entry of the cursor, null once it read the last one.
+     */
+    private byte[] read(Cursor cursor) {
+        this.lock.lock();
+        try {
+            while (cursor.sequence < this.nextSequence) {
+                if (cursor.sequence < this.firstSequence) {
+                    // Overwritten while the subscriber was behind, go on from the oldest entry left
+                    this.laggedEntries.add(this.firstSequence - cursor.sequence);
+                    cursor.sequence = this.firstSequence;
+                    cursor.position = this.head;
+                    cursor.generation = this.generation;
+                    continue;
+                }
+                if (cursor.generation != this.generation) {
+                    cursor.position = this.positionOf(cursor.sequence);
+                    cursor.generation = this.generation;
+                }
+                if (this.isWrap(cursor.position)) {
+                    cursor.position = 0;
+                    continue;
+                }
+
+                int position = cursor.position;
+                int length = this.buffer.getInt(position);
+                cursor.sequence++;
+                cursor.position = position + length == this.capacity ? 0 : position + length;
+                if (this.buffer.getLong(position + TIME_OFFSET) >= cursor.since) {
+                    byte[] payload = new byte[length - HEADER_SIZE];
+                    this.buffer.get(position + HEADER_SIZE, payload);
+                    return payload;
+                }
+            }
+            return null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Frees room for an entry, dropping the oldest ones when needed.
+     *
+     * @return Offset to write the entry at
+     */
+    private int reserve(int length) {
+        while (true) {
+            if (this.used == 0) {
+                this.head = 0;
+                this.tail = 0;
+            }
+            boolean wrap = this.tail + length > this.capacity;
+            int required = wrap ? this.capacity - this.tail + length : length;
+            if (this.capacity - this.used < required && this.capacity < this.maxCapacity) {
+                this.grow();
+                continue;
+            }
+            if (this.capacity - this.used >= required) {
+                if (wrap) {
+                    if (this.capacity - this.tail >= Integer.BYTES) {
+                        this.buffer.putInt(this.tail, WRAP);
+                    }
+                    this.used += this.capacity - this.tail;
+                    this.tail = 0;
+                }
+                int position = this.tail;
+                this.used += length;
+                this.tail = position + length == this.capacity ? 0 : position + length;
+                return position;
+            }
+            this.evictHead();
+        }
+    }
+
+    /**
+     * Doubles the buffer, moving the entries to its start in sequence order.
+     */
+    private void grow() {
+        int grownCapacity = (int) Math.min(2L * this.capacity, this.maxCapacity);
+        ByteBuffer grown = ByteBuffer.allocateDirect(grownCapacity);
+        int target = 0;
+        int position = this.head;
+        for (long sequence = this.firstSequence; sequence < this.nextSequence; sequence++) {
+            if (this.isWrap(position)) {
+                position = 0;
+            }
+            int length = this.buffer.getInt(position);
+            grown.put(target, this.buffer, position, length);
+            target += length;
+            position = position + length == this.capacity ? 0 : position + length;
+        }
+
+        this.buffer = grown;
+        this.capacity = grownCapacity;
+        this.generation++;
+        this.head = 0;
+        this.tail = target == grownCapacity ? 0 : target;
+        this.used = target;
+    }
+
+    /**
+     * Walks the entry headers from the oldest one, only needed by cursors taken before the buffer grew.
+     */
+    private int positionOf(long sequence) {
+        int position = this.head;
+        for (long current = this.firstSequence; current < sequence; current++) {
+            if (this.isWrap(position)) {
+                position = 0;
+            }
+            int length = this.buffer.getInt(position);
+            position = position + length == this.capacity ? 0 : position + length;
+        }
+        return position;
+    }
+
+    private void evictExpired(long now) {
+        long cutoff = now - this.retentionMillis;
+        while (this.used > 0) {
+            if (!this.isWrap(this.head) && this.buffer.getLong(this.head + TIME_OFFSET) >= cutoff) {
+                return;
+            }
+            this.evictHead();
+        }
+    }
+
+    private void evictHead() {
+        if (this.isWrap(this.head)) {
+            this.used -= this.capacity - this.head;
+            this.head = 0;
+            return;
+        }
+        int length = this.buffer.getInt(this.head);
+        this.used -= length;
+        this.head = this.head + length == this.capacity ? 0 : this.head + length;
+        this.firstSequence++;
+    }
+
+    private boolean isWrap(int position) {
+        return this.capacity - position < HEADER_SIZE || this.buffer.getInt(position) == WRAP;
+    }
+
+    private record PendingEntry(byte[] payload, long recordedAt) {
+    }
+
+    /**
+     * @param wip Work in progress, only the thread moving it from 0 reads for the subscriber
+     */
+    private record Subscriber(FluxSink<byte[]> sink, Cursor cursor, AtomicInteger wip) {
+
+        private Subscriber(FluxSink<byte[]> sink, Cursor cursor) {
+            this(sink, cursor, new AtomicInteger());
+        }
+    }
+
+    private static final class Cursor {
+        private long sequence;
+        private int position;
+        private int generation;
+        // Entries recorded before are skipped
+        private final long since;
+
+        private Cursor(long sequence, int position, int generation, long since) {
+            this.sequence = sequence;
+            this.position = position;
+            this.generation = generation;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.celada.notification.system.history;
+
+import com.celada.notification.system.models.NotificationEvent;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Live status changes indexed by event id and by source.
+ * A change is only handed to the subscribers of its id and its source, so the cost of a change grows with
+ * the subscribers interested in it and not with every subscriber. Subscribers leave the index when they
+ * complete or cancel, and the subscribers of an id complete once the event reaches a terminal status.
+ * Every subscriber buffers a bounded number of changes, one that falls further behind fails with an overflow
+ * error after the buffered changes and can watch again from the latest status.
+ */
+public class StatusSubscriptions {
+
+    // Changes buffered for a subscriber not requesting
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final int bufferSize;
+    private final Map<String, List<Watcher>> subscribersById;
+    private final Map<String, List<Watcher>> subscribersBySource;
+    private final AtomicInteger size;
+
+    public StatusSubscriptions() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    StatusSubscriptions(int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.subscribersById = new ConcurrentHashMap<>();
+        this.subscribersBySource = new ConcurrentHashMap<>();
+        this.size = new AtomicInteger();
+    }
+
+    /**
+     * @param current Latest snapshot of the event, read once subscribed so no change is missed in between,
+     *                and dropped when a change was handed over first
+     */
+    public Flux<NotificationEvent> watch(String id, Supplier<NotificationEvent> current) {
+        return this.subscribe(this.subscribersById, id, current, true);
+    }
+
+    public Flux<NotificationEvent> watchSource(String source) {
+        return this.subscribe(this.subscribersBySource, source, () -> null, false);
+    }
+
+    /**
+     * Hands a snapshot of the event to the subscribers of its id and its source, if any.
+     */
+    public void publish(NotificationEvent event) {
+        List<Watcher> byId = this.subscribersById.get(event.getId());
+        List<Watcher> bySource = Objects.isNull(event.getSource()) ? null : this.subscribersBySource.get(event.getSource());
+        if (Objects.isNull(byId) && Objects.isNull(bySource)) {
+            return;
+        }
+
+        // Copied once, the event keeps changing after this
+        NotificationEvent snapshot = event.toBuilder().build();
+        if (Objects.nonNull(byId)) {
+            byId.forEach(watcher -> watcher.change(snapshot));
+        }
+        if (Objects.nonNull(bySource)) {
+            bySource.forEach(watcher -> watcher.change(snapshot));
+        }
+    }
+
+    /**
+     * @return Subscribers in the index
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Completes every subscriber.
+     */
+    public void close() {
+        this.subscribersById.values().forEach(watchers -> watchers.forEach(Watcher::complete));
+        this.subscribersBySource.values().forEach(watchers -> watchers.forEach(Watcher::complete));
+    }
+
+    private Flux<NotificationEvent> subscribe(Map<String, List<Watcher>> index, String key,
+                                              Supplier<NotificationEvent> current, boolean completeOnTerminal) {
+        return Flux.defer(() -> {
+            Sinks.Many<NotificationEvent> sink = Sinks.many().unicast()
+                    .onBackpressureBuffer(Queues.<NotificationEvent>get(this.bufferSize).get());
+            Watcher watcher = new Watcher(sink, completeOnTerminal);
+            // Added under the key lock, unsubscribe could drop an empty list in between otherwise
+            index.compute(key, (ignored, watchers) -> {
+                List<Watcher> subscribers = Objects.isNull(watchers) ? new CopyOnWriteArrayList<>() : watchers;
+                subscribers.add(watcher);
+                return subscribers;
+            });
+            this.size.incrementAndGet();
+
+            NotificationEvent snapshot = current.get();
+            if (Objects.nonNull(snapshot)) {
+                watcher.snapshot(snapshot.toBuilder().build());
+            }
+            return watcher.sink.asFlux()
+                    .doFinally(signal -> this.unsubscribe(index, key, watcher));
+        });
+    }
+
+    private void unsubscribe(Map<String, List<Watcher>> index, String key, Watcher watcher) {
+        index.computeIfPresent(key, (ignored, watchers) -> {
+            if (watchers.remove(watcher)) {
+                this.size.decrementAndGet();
+            }
+            // Keys without subscribers leave the index
+            return watchers.isEmpty() ? null : watchers;
+        });
+    }
+
+    /**
+     * Sink of one subscriber, changes of one event can be published from several threads so every emission
+     * holds the watcher lock.
+     */
+    private static final class Watcher {
+        private final Sinks.Many<NotificationEvent> sink;
+        private final boolean completeOnTerminal;
+        // A published change was handed over, the snapshot read at subscription can only be older
+        private boolean changed;
+
+        private Watcher(Sinks.Many<NotificationEvent> sink, boolean completeOnTerminal) {
+            this.sink = sink;
+            this.completeOnTerminal = completeOnTerminal;
+        }
+
+        private synchronized void change(NotificationEvent event) {
+            this.changed = true;
+            this.emit(event);
+        }
+
+        private synchronized void snapshot(NotificationEvent event) {
+            if (!this.changed) {
+                this.emit(event);
+            }
+        }
+
+        private synchronized void complete() {
+            this.sink.tryEmitComplete();
+        }
+
+        private void emit(NotificationEvent event) {
+            if (Sinks.EmitResult.FAIL_OVERFLOW.equals(this.sink.tryEmitNext(event))) {
+                // Delivered after the buffered changes
+                this.sink.tryEmitError(Exceptions.failWithOverflow("Status watcher fell a full buffer behind"));
+                return;
+            }
+            if (this.completeOnTerminal && Objects.nonNull(event.getStatus()) && event.getStatus().isTerminal()) {
+                // Nothing more to watch for this event
+                this.sink.tryEmitComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.celada.notification.system.id;
+
+import java.time.Clock;
+import java.util.UUID;
+
+/**
+ * Assigns the id of every new event, safe to call from many threads.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    String nextId();
+
+    /**
+     * Lock-free, time ordered ids of 13 chars, their string order is their creation order.
+     */
+    static IdGenerator monotonic() {
+        return new MonotonicIdGenerator(Clock.systemUTC());
+    }
+
+    /**
+     * Random ids with no order, drawn from the shared SecureRandom.
+     */
+    static IdGenerator randomUuid() {
+        return () -> UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.celada.notification.system.id;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake style 64-bit ids: milliseconds since the epoch in the high 44 bits and a sequence in the low 20.
+ * The last id handed out is the only state, every id is one CAS above it or the first of the current millisecond,
+ * so ids never repeat or go back in this process even when the clock does.
+ * A sequence running out in a millisecond borrows from the next one.
+ * Ids are written in Crockford base32 with a fixed width of 13 chars, their string order is their numeric order.
+ */
+public class MonotonicIdGenerator implements IdGenerator {
+
+    static final int SEQUENCE_BITS = 20;
+    static final int LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private final Clock clock;
+    private final AtomicLong last;
+
+    public MonotonicIdGenerator(Clock clock) {
+        this.clock = clock;
+        this.last = new AtomicLong();
+    }
+
+    @Override
+    public String nextId() {
+        return encode(this.next());
+    }
+
+    /**
+     * @return Binary form of the next id
+     */
+    public long next() {
+        long first = this.clock.millis() << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = this.last.get();
+            next = Math.max(first, previous + 1);
+        } while (!this.last.compareAndSet(previous, next));
+        return next;
+    }
+
+    public static String encode(long id) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 0x1F)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @throws IllegalArgumentException When the id was not made by this generator
+     */
+    public static long decode(String id) {
+        if (!isValid(id)) {
+            throw new IllegalArgumentException("Not a monotonic id: " + id);
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            value = (value << 5) | VALUES[id.charAt(i)];
+        }
+        return value;
+    }
+
+    public static boolean isValid(String id) {
+        if (id == null || id.length() != LENGTH || id.charAt(0) > '7') {
+            // The first char only holds the top 4 bits
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            if (c >= VALUES.length || VALUES[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static Instant timestampOf(String id) {
+        return Instant.ofEpochMilli(decode(id) >>> SEQUENCE_BITS);
+    }
+
+    /**
+     * @return Smallest id that can be made at the instant, ids made before it are lower
+     */
+    public static String lowerBound(Instant instant) {
+        return encode(instant.toEpochMilli() << SEQUENCE_BITS);
+    }
+}
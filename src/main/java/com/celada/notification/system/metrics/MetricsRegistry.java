@@ -0,0 +1,87 @@
+package com.celada.notification.system.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process registry of counters, latency histograms and gauges, keyed by name and tags.
+ * Look metrics up once and keep them, the lookup builds the key while recording does not allocate.
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @param tags Pairs of tag name and value
+     */
+    public Counter counter(String name, String... tags) {
+        return this.counters.computeIfAbsent(keyOf(name, tags), key -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name, String... tags) {
+        return this.histograms.computeIfAbsent(keyOf(name, tags), key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a value read at query time, replacing any gauge with the same name and tags.
+     */
+    public void gauge(String name, LongSupplier value, String... tags) {
+        this.gauges.put(keyOf(name, tags), value);
+    }
+
+    public long gaugeValue(String name, String... tags) {
+        LongSupplier gauge = this.gauges.get(keyOf(name, tags));
+        return gauge == null ? 0 : gauge.getAsLong();
+    }
+
+    /**
+     * Every metric in the Prometheus text format, one line per value sorted by name.
+     * Histograms are written as p50, p99 and p999 quantiles plus their count and max.
+     */
+    public String scrape() {
+        Map<String, String> lines = new TreeMap<>();
+        this.counters.forEach((key, counter) -> lines.put(key, key + " " + counter.count()));
+        this.gauges.forEach((key, gauge) -> lines.put(key, key + " " + gauge.getAsLong()));
+        this.histograms.forEach((key, histogram) -> {
+            for (double quantile : QUANTILES) {
+                String line = withTag(key, "quantile", String.valueOf(quantile));
+                lines.put(line, line + " " + histogram.percentile(quantile));
+            }
+            lines.put(suffixed(key, "_count"), suffixed(key, "_count") + " " + histogram.count());
+            lines.put(suffixed(key, "_max"), suffixed(key, "_max") + " " + histogram.max());
+        });
+
+        StringBuilder text = new StringBuilder();
+        lines.values().forEach(line -> text.append(line).append('\n'));
+        return text.toString();
+    }
+
+    private static String keyOf(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags must be pairs of name and value: " + name);
+        }
+        String key = name;
+        for (int i = 0; i < tags.length; i += 2) {
+            key = withTag(key, tags[i], tags[i + 1]);
+        }
+        return key;
+    }
+
+    private static String withTag(String key, String tag, String value) {
+        String pair = tag + "=\"" + value + "\"";
+        return key.endsWith("}")
+                ? key.substring(0, key.length() - 1) + "," + pair + "}"
+                : key + "{" + pair + "}";
+    }
+
+    private static String suffixed(String key, String suffix) {
+        int tags = key.indexOf('{');
+        return tags < 0 ? key + suffix : key.substring(0, tags) + suffix + key.substring(tags);
+    }
+}
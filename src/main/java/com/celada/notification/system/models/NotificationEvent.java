@@ -5,10 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class NotificationEvent {
@@ -18,4 +19,6 @@ public class NotificationEvent {
     private Priority priority;
     private LocalDateTime timestamp;
     private NotificationStatus status;
+    // Not delivered after it, null never expires
+    private Instant deadline;
 }
@@ -3,5 +3,14 @@ package com.celada.notification.system.models;
 public enum NotificationStatus {
     PENDING,
     SENT,
-    FAILED
+    FAILED,
+    // Deadline over before it was delivered, never sent again
+    EXPIRED;
+
+    /**
+     * @return True when the event will not change status again
+     */
+    public boolean isTerminal() {
+        return SENT.equals(this) || EXPIRED.equals(this);
+    }
 }
@@ -0,0 +1,7 @@
+package com.celada.notification.system.models;
+
+public enum PublishResult {
+    ACCEPTED, // Queued for processing
+    SPILLED, // Queued on disk, processed once the pipeline catches up
+    REJECTED // Ingestion queue is full
+}
@@ -0,0 +1,166 @@
+package com.celada.notification.system.resilience;
+
+import com.celada.notification.system.config.ConcurrencyLimitConfig;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD concurrency limit of one channel.
+ * The limit grows by one per limit calls answered fast and shrinks by the backoff ratio
+ * on every slow or failed call, callers over the limit wait for a permit.
+ * Waiting callers are granted by rank: a caller overtakes the callers of lower rank that started waiting
+ * less than maxLimit acquisitions per rank of difference before it, so a low rank is delayed but never starved.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final ConcurrencyLimitConfig config;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+
+    // Ordered by rank and arrival
+    private final Queue<Waiter> waiters;
+    private long acquisitions;
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitConfig config, int maxLimit) {
+        this.config = config;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = config.getLatencyThreshold().toNanos();
+        this.waiters = new PriorityQueue<>(Comparator.comparingLong(waiter -> waiter.order));
+        this.limit = Math.min(config.getInitialLimit(), maxLimit);
+    }
+
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    public synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Completes once the call can start, a granted call must end in onSuccess, onError or release.
+     */
+    public Mono<Void> acquire() {
+        return this.acquire(0);
+    }
+
+    /**
+     * @param rank Higher ranks are granted first while callers wait
+     */
+    public Mono<Void> acquire(int rank) {
+        if (!this.config.isEnabled()) {
+            return Mono.empty();
+        }
+
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            synchronized (this) {
+                waiter.order = this.acquisitions++ - (long) rank * this.maxLimit;
+                if (this.inFlight < (int) this.limit) {
+                    this.inFlight++;
+                    waiter.state.set(GRANTED);
+                } else {
+                    this.waiters.offer(waiter);
+                }
+            }
+            sink.onCancel(() -> this.cancel(waiter));
+            if (waiter.state.get() == GRANTED) {
+                sink.success();
+            }
+        });
+    }
+
+    public void onSuccess(long latencyNanos) {
+        if (!this.config.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            if (latencyNanos > this.latencyThresholdNanos) {
+                this.decrease();
+            } else if (this.inFlight * 2 >= this.limit) {
+                // Only grow while the limit is being used
+                this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+            }
+            this.inFlight--;
+        }
+        this.grantWaiters();
+    }
+
+    public void onError(long latencyNanos) {
+        if (!this.config.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            this.decrease();
+            this.inFlight--;
+        }
+        this.grantWaiters();
+    }
+
+    /**
+     * Gives back a permit without a latency sample.
+     */
+    public void release() {
+        if (!this.config.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            this.inFlight--;
+        }
+        this.grantWaiters();
+    }
+
+    private void decrease() {
+        this.limit = Math.max(this.config.getMinLimit(), this.limit * this.config.getBackoffRatio());
+    }
+
+    private void cancel(Waiter waiter) {
+        if (waiter.state.compareAndSet(WAITING, CANCELLED)) {
+            synchronized (this) {
+                this.waiters.remove(waiter);
+            }
+        } else if (waiter.state.compareAndSet(GRANTED, CANCELLED)) {
+            // Granted but the call never started
+            this.release();
+        }
+    }
+
+    private void grantWaiters() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            while (this.inFlight < (int) this.limit && !this.waiters.isEmpty()) {
+                Waiter waiter = this.waiters.poll();
+                if (waiter.state.compareAndSet(WAITING, GRANTED)) {
+                    this.inFlight++;
+                    granted.add(waiter);
+                }
+            }
+        }
+        // Outside the lock, the call starts on success
+        granted.forEach(waiter -> waiter.sink.success());
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Void> sink;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        // Arrival moved ahead by the rank, set under the limiter lock
+        private long order;
+
+        private Waiter(MonoSink<Void> sink) {
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.celada.notification.system.resilience;
+
+public class CallNotPermittedException extends RuntimeException {
+    public CallNotPermittedException(String channel) {
+        super("Circuit breaker of " + channel + " is open");
+    }
+}
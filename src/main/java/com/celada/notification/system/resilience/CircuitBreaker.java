@@ -0,0 +1,151 @@
+package com.celada.notification.system.resilience;
+
+import com.celada.notification.system.config.CircuitBreakerConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Count based circuit breaker of one channel.
+ * Opens when the failure or slow call rate of the last calls goes over its threshold,
+ * lets a few trial calls through once the open time is over and closes again if they go well.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    // Ring of the last outcomes, FAILED and SLOW bits
+    private final byte[] window;
+    private int windowIndex;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+
+    private State state;
+    private long openUntil;
+    private int trialCallsInFlight;
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        this.slowCallNanos = config.getSlowCallDuration().toNanos();
+        this.openNanos = config.getOpenDuration().toNanos();
+        this.window = new byte[config.getWindowSize()];
+        this.state = State.CLOSED;
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    /**
+     * @return false when the call must not be made, a granted call must end in onSuccess, onError or releasePermission
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (!this.config.isEnabled()) {
+            return true;
+        }
+
+        if (State.OPEN.equals(this.state)) {
+            if (System.nanoTime() - this.openUntil < 0) {
+                return false;
+            }
+            this.transitionTo(State.HALF_OPEN);
+        }
+
+        if (State.HALF_OPEN.equals(this.state)) {
+            if (this.trialCallsInFlight + this.calls >= this.config.getHalfOpenCalls()) {
+                return false;
+            }
+            this.trialCallsInFlight++;
+        }
+        return true;
+    }
+
+    /**
+     * Gives back a permission not used for a call.
+     */
+    public synchronized void releasePermission() {
+        if (State.HALF_OPEN.equals(this.state) && this.trialCallsInFlight > 0) {
+            this.trialCallsInFlight--;
+        }
+    }
+
+    public void onSuccess(long durationNanos) {
+        this.record(durationNanos, false);
+    }
+
+    public void onError(long durationNanos) {
+        this.record(durationNanos, true);
+    }
+
+    private synchronized void record(long durationNanos, boolean failed) {
+        if (!this.config.isEnabled() || State.OPEN.equals(this.state)) {
+            // Calls started before opening do not count
+            return;
+        }
+
+        byte outcome = 0;
+        if (failed) {
+            outcome |= FAILED;
+        }
+        if (durationNanos >= this.slowCallNanos) {
+            outcome |= SLOW;
+        }
+        this.add(outcome);
+
+        if (State.HALF_OPEN.equals(this.state)) {
+            this.trialCallsInFlight = Math.max(0, this.trialCallsInFlight - 1);
+            if (this.calls >= this.config.getHalfOpenCalls()) {
+                this.transitionTo(this.isOverThresholds() ? State.OPEN : State.CLOSED);
+            }
+        } else if (this.calls >= this.config.getMinimumCalls() && this.isOverThresholds()) {
+            this.transitionTo(State.OPEN);
+        }
+    }
+
+    private void add(byte outcome) {
+        if (this.calls == this.window.length) {
+            // Full window, the oldest outcome leaves
+            byte oldest = this.window[this.windowIndex];
+            this.failures -= (oldest & FAILED) != 0 ? 1 : 0;
+            this.slowCalls -= (oldest & SLOW) != 0 ? 1 : 0;
+        } else {
+            this.calls++;
+        }
+        this.window[this.windowIndex] = outcome;
+        this.windowIndex = (this.windowIndex + 1) % this.window.length;
+        this.failures += (outcome & FAILED) != 0 ? 1 : 0;
+        this.slowCalls += (outcome & SLOW) != 0 ? 1 : 0;
+    }
+
+    private boolean isOverThresholds() {
+        return (double) this.failures / this.calls >= this.config.getFailureRateThreshold()
+                || (double) this.slowCalls / this.calls >= this.config.getSlowCallRateThreshold();
+    }
+
+    private void transitionTo(State state) {
+        log.warn("Circuit breaker {} from {} to {}", this.name, this.state, state);
+        this.state = state;
+        // Every state starts with an empty window
+        this.windowIndex = 0;
+        this.calls = 0;
+        this.failures = 0;
+        this.slowCalls = 0;
+        this.trialCallsInFlight = 0;
+        if (State.OPEN.equals(state)) {
+            this.openUntil = System.nanoTime() + this.openNanos;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.celada.notification.system.resilience;
+
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String channel) {
+        super("Deadline exceeded before " + channel + " delivered the notification");
+    }
+}
@@ -0,0 +1,42 @@
+package com.celada.notification.system.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket capping extra calls to a share of the live traffic.
+ * Every live call deposits ratio tokens and every extra call withdraws a whole one.
+ */
+public class TrafficBudget {
+
+    // Tokens are kept in thousandths to stay on a lock-free long
+    private static final long SCALE = 1_000;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    public TrafficBudget(double ratio, int maxTokens) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(this.maxBalance);
+    }
+
+    public void deposit() {
+        this.balance.accumulateAndGet(this.deposit, (current, added) -> Math.min(this.maxBalance, current + added));
+    }
+
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = this.balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!this.balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    public double getBalance() {
+        return (double) this.balance.get() / SCALE;
+    }
+}
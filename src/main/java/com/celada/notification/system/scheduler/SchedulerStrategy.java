@@ -0,0 +1,45 @@
+package com.celada.notification.system.scheduler;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Picks the scheduler running the blocking sends of each channel.
+ * The scheduler only runs the sends, how many of them are in flight is still capped by the concurrency
+ * of the channel and its adaptive limit.
+ */
+public interface SchedulerStrategy {
+
+    Scheduler schedulerFor(String channel);
+
+    /**
+     * Called once the channel stops using its scheduler, disposes it when the strategy created it for the channel.
+     * Shared schedulers are left running.
+     */
+    default void release(String channel, Scheduler scheduler) {
+    }
+
+    /**
+     * Shared bounded elastic pool, up to 10 threads per core and queueing beyond that.
+     */
+    static SchedulerStrategy boundedElastic() {
+        return channel -> Schedulers.boundedElastic();
+    }
+
+    /**
+     * One virtual thread per send, a blocked send does not pin a platform thread.
+     * Every channel gets its own executor, disposed when the channel is released.
+     * Virtual threads only add parallelism once the channel concurrency is raised over the platform pool,
+     * with the default concurrency of 32 they save threads, not latency.
+     */
+    static SchedulerStrategy virtualThreads() {
+        return new VirtualThreadStrategy();
+    }
+
+    /**
+     * Scheduler owned by the caller, never disposed by the strategy.
+     */
+    static SchedulerStrategy of(Scheduler scheduler) {
+        return channel -> scheduler;
+    }
+}
@@ -0,0 +1,24 @@
+package com.celada.notification.system.scheduler;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual thread per task executor for each channel, disposed with the channel.
+ */
+class VirtualThreadStrategy implements SchedulerStrategy {
+
+    @Override
+    public Scheduler schedulerFor(String channel) {
+        return Schedulers.fromExecutorService(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("notification-virtual-" + channel + "-", 0).factory()),
+                "notification-virtual-" + channel);
+    }
+
+    @Override
+    public void release(String channel, Scheduler scheduler) {
+        scheduler.dispose();
+    }
+}
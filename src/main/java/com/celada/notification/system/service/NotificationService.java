@@ -1,8 +1,25 @@
 package com.celada.notification.system.service;
 
 import com.celada.notification.system.models.NotificationEvent;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface NotificationService {
     Mono<Boolean> sendNotification(NotificationEvent event);
+
+    /**
+     * Sends all the events in one round trip.
+     *
+     * @return One result per event, in the same order: true when the event was delivered
+     */
+    default Mono<List<Boolean>> sendNotifications(List<NotificationEvent> events) {
+        // No batch support from the provider, one call per event
+        return Flux.fromIterable(events)
+                .concatMap(event -> this.sendNotification(event)
+                        .thenReturn(true)
+                        .onErrorReturn(false))
+                .collectList();
+    }
 }
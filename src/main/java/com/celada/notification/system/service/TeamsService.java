@@ -4,10 +4,13 @@ import com.celada.notification.system.models.NotificationEvent;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 @Slf4j
 public class TeamsService implements NotificationService {
+    @Override
     public Mono<Boolean> sendNotification(NotificationEvent event) {
         return Mono.fromCallable(() -> {
             Thread.sleep(150);
@@ -19,4 +22,19 @@ public class TeamsService implements NotificationService {
             return true;
         });
     }
+
+    @Override
+    public Mono<List<Boolean>> sendNotifications(List<NotificationEvent> events) {
+        return Mono.fromCallable(() -> {
+            // Same fixed cost for the whole batch
+            Thread.sleep(150);
+            List<Boolean> results = new ArrayList<>(events.size());
+            for (int i = 0; i < events.size(); i++) {
+                // Simulate error with 10% probability per event
+                results.add(ThreadLocalRandom.current().nextInt(10) != 0);
+            }
+            log.info("Batch of {} notifications sent to Teams", events.size());
+            return results;
+        });
+    }
 }
@@ -0,0 +1,7 @@
+package com.celada.notification.system.storage;
+
+public enum FsyncMode {
+    NONE, // The OS writes pages back when it wants
+    BATCH, // Background fsync every interval or every N records, appends do not wait
+    SYNC // Appends wait for the group fsync covering them
+}
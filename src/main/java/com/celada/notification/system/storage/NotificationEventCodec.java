@@ -0,0 +1,115 @@
+package com.celada.notification.system.storage;
+
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+import com.celada.notification.system.models.Priority;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary form of a NotificationEvent.
+ * Strings are length prefixed UTF-8 with -1 for null, enums one byte with -1 for null.
+ * Version 2 appends the deadline, version 1 records are still read.
+ */
+public final class NotificationEventCodec {
+
+    private static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_DEADLINE = 1;
+    private static final byte NULL = -1;
+
+    private NotificationEventCodec() {
+    }
+
+    public static byte[] encode(NotificationEvent event) {
+        byte[] id = bytesOf(event.getId());
+        byte[] source = bytesOf(event.getSource());
+        byte[] message = bytesOf(event.getMessage());
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + stringSize(id) + stringSize(source) + stringSize(message) + 1 + 1 + 12 + 1 + Long.BYTES);
+        buffer.put(VERSION);
+        putString(buffer, id);
+        putString(buffer, source);
+        putString(buffer, message);
+        buffer.put(ordinalOf(event.getPriority()));
+        putTimestamp(buffer, event.getTimestamp());
+        buffer.put(ordinalOf(event.getStatus()));
+        buffer.putLong(event.getDeadline() == null ? Long.MIN_VALUE : event.getDeadline().toEpochMilli());
+        return buffer.array();
+    }
+
+    public static NotificationEvent decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION && version != VERSION_WITHOUT_DEADLINE) {
+            throw new IllegalStateException("Unknown notification event format version " + version);
+        }
+
+        NotificationEvent event = NotificationEvent.builder()
+                .id(getString(buffer))
+                .source(getString(buffer))
+                .message(getString(buffer))
+                .priority(enumOf(Priority.values(), buffer.get()))
+                .timestamp(getTimestamp(buffer))
+                .status(enumOf(NotificationStatus.values(), buffer.get()))
+                .build();
+        if (version == VERSION) {
+            long deadline = buffer.getLong();
+            event.setDeadline(deadline == Long.MIN_VALUE ? null : Instant.ofEpochMilli(deadline));
+        }
+        return event;
+    }
+
+    static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int stringSize(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    static byte ordinalOf(Enum<?> value) {
+        return value == null ? NULL : (byte) value.ordinal();
+    }
+
+    static <E extends Enum<E>> E enumOf(E[] values, byte ordinal) {
+        return ordinal == NULL ? null : values[ordinal];
+    }
+
+    private static void putTimestamp(ByteBuffer buffer, LocalDateTime timestamp) {
+        if (timestamp == null) {
+            buffer.putLong(Long.MIN_VALUE);
+            buffer.putInt(0);
+            return;
+        }
+        buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(timestamp.getNano());
+    }
+
+    private static LocalDateTime getTimestamp(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        return seconds == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,146 @@
+package com.celada.notification.system.storage;
+
+import com.celada.notification.system.models.NotificationEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * First in, first out queue of events on a local file, for the overflow of the ingestion queue.
+ * Records are appended at the end and read from the front, the file is truncated every time it is read empty
+ * and the read prefix is cut off once it is larger than the threshold and than the records left, so it stays bounded
+ * by the events spilled even when it is never read empty.
+ * It is not a durable log, the file is cleared on open and the write-ahead log covers crashes.
+ */
+public class SpillQueue implements AutoCloseable {
+
+    static final long DEFAULT_COMPACT_THRESHOLD = 64 << 20;
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer header;
+    // Read bytes at the front of the file before it is compacted
+    private final long compactThreshold;
+    private long readPosition;
+    private long writePosition;
+    private volatile int size;
+
+    private SpillQueue(Path path, FileChannel channel, long compactThreshold) {
+        this.path = path;
+        this.channel = channel;
+        this.header = ByteBuffer.allocate(Integer.BYTES);
+        this.compactThreshold = compactThreshold;
+    }
+
+    public static SpillQueue open(Path path) {
+        return open(path, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    static SpillQueue open(Path path, long compactThreshold) {
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return new SpillQueue(path, channel, compactThreshold);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open spill file " + path, e);
+        }
+    }
+
+    public synchronized void offer(NotificationEvent event) {
+        byte[] payload = NotificationEventCodec.encode(event);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + payload.length);
+        record.putInt(payload.length).put(payload).flip();
+        try {
+            while (record.hasRemaining()) {
+                this.writePosition += this.channel.write(record, this.writePosition);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill event to " + this.path, e);
+        }
+        this.size++;
+    }
+
+    /**
+     * @return Oldest spilled event, null when empty
+     */
+    public synchronized NotificationEvent poll() {
+        if (this.size == 0) {
+            return null;
+        }
+        try {
+            this.header.clear();
+            this.readFully(this.header, this.readPosition);
+            ByteBuffer payload = ByteBuffer.allocate(this.header.flip().getInt());
+            this.readFully(payload, this.readPosition + Integer.BYTES);
+            this.readPosition += Integer.BYTES + payload.capacity();
+            if (--this.size == 0) {
+                // Read empty, start over instead of growing the file
+                this.channel.truncate(0);
+                this.readPosition = 0;
+                this.writePosition = 0;
+            } else if (this.readPosition >= this.compactThreshold && this.readPosition >= this.writePosition - this.readPosition) {
+                this.compact();
+            }
+            return NotificationEventCodec.decode(payload.flip());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read spilled event from " + this.path, e);
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Drops the events still spilled and deletes the file.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            this.channel.close();
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close spill file " + this.path, e);
+        }
+    }
+
+    /**
+     * Moves the unread records to the start of the file and truncates it after them.
+     * The read prefix is at least as large as what moves, so every byte is moved once at most on average.
+     */
+    private void compact() throws IOException {
+        long remaining = this.writePosition - this.readPosition;
+        ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(COPY_CHUNK, remaining));
+        long moved = 0;
+        while (moved < remaining) {
+            chunk.clear().limit((int) Math.min(chunk.capacity(), remaining - moved));
+            this.readFully(chunk, this.readPosition + moved);
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                moved += this.channel.write(chunk, moved);
+            }
+        }
+        this.channel.truncate(remaining);
+        this.readPosition = 0;
+        this.writePosition = remaining;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Spill file ends before its last record");
+            }
+        }
+    }
+}
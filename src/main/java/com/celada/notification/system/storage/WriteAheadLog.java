@@ -0,0 +1,484 @@
+package com.celada.notification.system.storage;
+
+import com.celada.notification.system.config.WalConfig;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of published events and their status changes, split in memory mapped segments.
+ * Appends only copy into the mapped segment, a flusher thread fsyncs them in groups.
+ * On open it reads the segments left by the previous run and gives back the events that never reached SENT or EXPIRED.
+ * A segment is deleted once every event written on it and on older segments is SENT or EXPIRED.
+ * Past the configured sealed segments, the events still live on the oldest one are written again on the current one,
+ * so an event that is never sent keeps at most its own records on disk, not every segment after it.
+ */
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final byte EVENT = 1;
+    private static final byte STATUS = 2;
+    private static final byte DISCARD = 3;
+    // Length and CRC of each record, length covers type and payload
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final WalConfig config;
+    private final ReentrantLock lock;
+    // Wakes the flusher before its interval is over
+    private final Condition flushNeeded;
+    // Wakes appenders waiting for their fsync
+    private final Condition flushed;
+
+    // Sealed segments, oldest first
+    private final Deque<Segment> sealed;
+    // Latest EVENT record and status of each event not SENT yet
+    private final Map<String, LiveEvent> liveEvents;
+    private Segment current;
+    private long appendedRecords;
+    private long flushedRecords;
+    private volatile boolean closed;
+
+    private final List<NotificationEvent> recoveredEvents;
+    // Segments of the previous run, deleted once the recovered events are appended again
+    private final List<Path> recoveredSegments;
+    private final Thread flusher;
+
+    private WriteAheadLog(WalConfig config, List<Path> previousSegments, long nextIndex) throws IOException {
+        this.config = config;
+        this.lock = new ReentrantLock();
+        this.flushNeeded = this.lock.newCondition();
+        this.flushed = this.lock.newCondition();
+        this.sealed = new ArrayDeque<>();
+        this.liveEvents = new HashMap<>();
+        this.recoveredSegments = new ArrayList<>(previousSegments);
+        this.recoveredEvents = replay(previousSegments);
+        this.current = Segment.create(config.getDirectory(), nextIndex, config.getSegmentSize());
+
+        this.flusher = new Thread(this::flushLoop, "notification-wal-flusher");
+        this.flusher.setDaemon(true);
+        if (!FsyncMode.NONE.equals(config.getFsyncMode())) {
+            this.flusher.start();
+        }
+    }
+
+    public static WriteAheadLog open(WalConfig config) {
+        try {
+            Files.createDirectories(config.getDirectory());
+            List<Path> segments;
+            try (Stream<Path> files = Files.list(config.getDirectory())) {
+                segments = files
+                        .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                        .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+            long nextIndex = segments.isEmpty() ? 0 : indexOf(segments.get(segments.size() - 1)) + 1;
+            return new WriteAheadLog(config, segments, nextIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log on " + config.getDirectory(), e);
+        }
+    }
+
+    /**
+     * @return Events of the previous run that never reached SENT or EXPIRED, in publish order
+     */
+    public List<NotificationEvent> getRecoveredEvents() {
+        return this.recoveredEvents;
+    }
+
+    /**
+     * Deletes the segments of the previous run, call it once the recovered events are published again.
+     */
+    public void completeRecovery() {
+        for (Path segment : this.recoveredSegments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.error("Cannot delete recovered segment {}", segment, e);
+            }
+        }
+        this.recoveredSegments.clear();
+    }
+
+    public void appendEvent(NotificationEvent event) {
+        this.append(EVENT, NotificationEventCodec.encode(event), event.getId(), event.getStatus());
+    }
+
+    public void appendStatus(String id, NotificationStatus status) {
+        this.append(STATUS, statusPayload(id, status), id, status);
+    }
+
+    /**
+     * Forgets an appended event that was not taken for processing.
+     */
+    public void appendDiscard(String id) {
+        byte[] idBytes = NotificationEventCodec.bytesOf(id);
+        ByteBuffer payload = ByteBuffer.allocate(NotificationEventCodec.stringSize(idBytes));
+        NotificationEventCodec.putString(payload, idBytes);
+        this.append(DISCARD, payload.array(), id, null);
+    }
+
+    /**
+     * Waits for the flusher to finish its fsync before the last one, then closes the segments.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.flushNeeded.signalAll();
+            this.flushed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.lock.lock();
+        try {
+            if (!FsyncMode.NONE.equals(this.config.getFsyncMode())) {
+                this.current.force(this.current.buffer.position());
+            }
+            this.current.close();
+            for (Segment segment : this.sealed) {
+                segment.close();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void append(byte type, byte[] payload, String id, NotificationStatus status) {
+        int length = 1 + payload.length;
+        if (HEADER_SIZE + length + Integer.BYTES > this.config.getSegmentSize()) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit in a segment");
+        }
+        int crc = checksum(type, payload);
+
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            if (!this.fits(length)) {
+                this.roll();
+                this.compact();
+            }
+            long sequence = this.write(crc, type, ByteBuffer.wrap(payload));
+            this.track(type, id, status);
+
+            if (this.isFlushDue()) {
+                this.flushNeeded.signal();
+            }
+            if (FsyncMode.SYNC.equals(this.config.getFsyncMode())) {
+                // Group commit, one fsync covers every append waiting here
+                while (this.flushedRecords < sequence && !this.closed) {
+                    this.flushed.awaitUninterruptibly();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot roll write-ahead log segment", e);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps room for the zero length that ends the segment.
+     */
+    private boolean fits(int length) {
+        return this.current.buffer.remaining() >= HEADER_SIZE + length + Integer.BYTES;
+    }
+
+    /**
+     * @return Sequence of the record
+     */
+    private long write(int crc, byte type, ByteBuffer payload) throws IOException {
+        int length = 1 + payload.remaining();
+        if (!this.fits(length)) {
+            this.roll();
+        }
+        this.current.buffer.putInt(length)
+                .putInt(crc)
+                .put(type)
+                .put(payload);
+        return ++this.appendedRecords;
+    }
+
+    private void track(byte type, String id, NotificationStatus status) {
+        if (EVENT == type) {
+            LiveEvent live = this.liveEvents.computeIfAbsent(id, key -> new LiveEvent());
+            Segment previous = live.segment;
+            live.segment = this.current;
+            live.status = status;
+            this.current.live++;
+            this.release(previous);
+        } else if (DISCARD == type || (status != null && status.isTerminal())) {
+            LiveEvent live = this.liveEvents.remove(id);
+            this.release(live == null ? null : live.segment);
+        } else if (this.liveEvents.containsKey(id)) {
+            this.liveEvents.get(id).status = status;
+        }
+    }
+
+    private void release(Segment segment) {
+        if (segment == null) {
+            return;
+        }
+        segment.live--;
+        this.deleteReleased();
+    }
+
+    /**
+     * Newer segments hold the status records of older ones, deletes from the oldest only.
+     */
+    private void deleteReleased() {
+        while (!this.sealed.isEmpty() && this.sealed.peekFirst().live == 0) {
+            this.sealed.pollFirst().delete();
+        }
+    }
+
+    /**
+     * Once there are more sealed segments than configured, writes the events still live on the oldest one
+     * again on the current one, followed by their latest status, and deletes it.
+     */
+    private void compact() throws IOException {
+        if (this.sealed.size() <= this.config.getMaxSealedSegments()) {
+            return;
+        }
+        Segment oldest = this.sealed.peekFirst();
+        ByteBuffer records = oldest.buffer.duplicate().flip();
+        int moved = 0;
+        while (oldest.live > 0 && records.remaining() >= HEADER_SIZE) {
+            int length = records.getInt();
+            int crc = records.getInt();
+            ByteBuffer record = records.slice(records.position(), length);
+            records.position(records.position() + length);
+            if (EVENT != record.get(0)) {
+                continue;
+            }
+            NotificationEvent event = NotificationEventCodec.decode(record.slice(1, length - 1));
+            LiveEvent live = this.liveEvents.get(event.getId());
+            if (live == null || live.segment != oldest) {
+                // SENT, discarded or written again since
+                continue;
+            }
+            this.write(crc, EVENT, record.slice(1, length - 1));
+            live.segment = this.current;
+            this.current.live++;
+            oldest.live--;
+            if (live.status != null && !live.status.equals(event.getStatus())) {
+                byte[] payload = statusPayload(event.getId(), live.status);
+                this.write(checksum(STATUS, payload), STATUS, ByteBuffer.wrap(payload));
+            }
+            moved++;
+        }
+        log.debug("Compacted write-ahead log segment {}, moved {} live events", oldest.path, moved);
+        this.deleteReleased();
+    }
+
+    private void roll() throws IOException {
+        Segment previous = this.current;
+        if (!FsyncMode.NONE.equals(this.config.getFsyncMode())) {
+            previous.force(previous.buffer.position());
+        }
+        this.sealed.addLast(previous);
+        this.current = Segment.create(this.config.getDirectory(), previous.index + 1, this.config.getSegmentSize());
+        // Sealed with every event already SENT
+        this.deleteReleased();
+    }
+
+    private boolean isFlushDue() {
+        long pending = this.appendedRecords - this.flushedRecords;
+        return pending > 0 && (FsyncMode.SYNC.equals(this.config.getFsyncMode()) || pending >= this.config.getFsyncEveryRecords());
+    }
+
+    private void flushLoop() {
+        long intervalNanos = this.config.getFsyncInterval().toNanos();
+        while (!this.closed) {
+            Segment segment;
+            int position;
+            long sequence;
+
+            this.lock.lock();
+            try {
+                long waitNanos = intervalNanos;
+                while (!this.closed && !this.isFlushDue() && waitNanos > 0) {
+                    waitNanos = this.flushNeeded.awaitNanos(waitNanos);
+                }
+                if (this.closed || this.appendedRecords == this.flushedRecords) {
+                    continue;
+                }
+                segment = this.current;
+                position = segment.buffer.position();
+                sequence = this.appendedRecords;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                this.lock.unlock();
+            }
+
+            // Outside the lock, appends keep going while the pages are written
+            segment.force(position);
+
+            this.lock.lock();
+            try {
+                this.flushedRecords = Math.max(this.flushedRecords, sequence);
+                this.flushed.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private static List<NotificationEvent> replay(List<Path> segments) throws IOException {
+        Map<String, NotificationEvent> pending = new LinkedHashMap<>();
+        for (Path path : segments) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                replaySegment(path, buffer, pending);
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Recovered {} notification events from the write-ahead log", pending.size());
+        }
+        return new ArrayList<>(pending.values());
+    }
+
+    private static void replaySegment(Path path, ByteBuffer buffer, Map<String, NotificationEvent> pending) {
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - Integer.BYTES) {
+                // End of the written records
+                return;
+            }
+            int crc = buffer.getInt();
+            ByteBuffer record = buffer.slice(buffer.position(), length);
+            CRC32C actual = new CRC32C();
+            actual.update(record.duplicate());
+            if ((int) actual.getValue() != crc) {
+                log.warn("Torn record on {}, ignoring the rest of the segment", path);
+                return;
+            }
+            buffer.position(buffer.position() + length);
+
+            byte type = record.get();
+            if (EVENT == type) {
+                NotificationEvent event = NotificationEventCodec.decode(record);
+                pending.put(event.getId(), event);
+            } else if (STATUS == type) {
+                String id = NotificationEventCodec.getString(record);
+                NotificationStatus status = NotificationEventCodec.enumOf(NotificationStatus.values(), record.get());
+                if (status != null && status.isTerminal()) {
+                    pending.remove(id);
+                } else if (pending.containsKey(id)) {
+                    pending.get(id).setStatus(status);
+                }
+            } else if (DISCARD == type) {
+                pending.remove(NotificationEventCodec.getString(record));
+            }
+        }
+    }
+
+    private static byte[] statusPayload(String id, NotificationStatus status) {
+        byte[] idBytes = NotificationEventCodec.bytesOf(id);
+        ByteBuffer payload = ByteBuffer.allocate(NotificationEventCodec.stringSize(idBytes) + 1);
+        NotificationEventCodec.putString(payload, idBytes);
+        payload.put(NotificationEventCodec.ordinalOf(status));
+        return payload.array();
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class LiveEvent {
+        private Segment segment;
+        // Null until a status is appended for an event written without one
+        private NotificationStatus status;
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // Events whose latest EVENT record is here and are not SENT yet
+        private int live;
+
+        private Segment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path directory, long index, int size) throws IOException {
+            Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        void force(int position) {
+            if (position > 0) {
+                this.buffer.force(0, position);
+            }
+        }
+
+        void close() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                log.error("Cannot close segment {}", this.path, e);
+            }
+        }
+
+        void delete() {
+            this.close();
+            try {
+                Files.deleteIfExists(this.path);
+            } catch (IOException e) {
+                log.error("Cannot delete segment {}", this.path, e);
+            }
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.celada.pipeline;
 
+import com.celada.database.ColumnarCatalog;
 import com.celada.database.Database;
-import com.celada.models.Review;
 import reactor.core.publisher.Flux;
 
+import java.util.stream.IntStream;
+
 public class PipelineAllComments {
+    /**
+     * Reads the flattened comment column, in catalog order.
+     */
     public static Flux<String> getAllReviewsComments(){
-        return Database.getDataAsFlux()
-                .flatMap(videogame -> Flux.fromIterable(videogame.getReviews()))
-                .map(Review::getComment);
+        return Flux.defer(() -> {
+            ColumnarCatalog catalog = Database.columns();
+            return Flux.fromStream(IntStream.range(0, catalog.reviewCount()).mapToObj(catalog::reviewComment));
+        });
     }
 }
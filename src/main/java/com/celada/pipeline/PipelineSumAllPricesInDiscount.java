@@ -1,14 +1,13 @@
 package com.celada.pipeline;
 
 import com.celada.database.Database;
-import com.celada.models.Videogame;
 import reactor.core.publisher.Mono;
 
 public class PipelineSumAllPricesInDiscount {
+    /**
+     * Sums the price column over the discount bits, no videogame is read.
+     */
     public static Mono<Double> sumAllPricesInDiscount() {
-        return Database.getDataAsFlux()
-                .filter(Videogame::isDiscount)
-                .map(Videogame::getPrice)
-                .reduce(0.0, Double::sum);
+        return Mono.fromSupplier(() -> Database.columns().sumPricesInDiscount());
     }
 }
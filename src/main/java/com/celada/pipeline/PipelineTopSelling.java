@@ -1,16 +1,19 @@
 package com.celada.pipeline;
 
+import com.celada.database.CatalogSnapshot;
 import com.celada.database.Database;
-import com.celada.models.Videogame;
 import reactor.core.publisher.Flux;
 
+import java.util.Arrays;
+
 public class PipelineTopSelling {
     /**
-     * @return Videogames sold more than 80 copies
+     * @return Videogames sold more than 80 copies, found with the sales index
      */
     public static Flux<String> topSelling() {
-        return Database.getDataAsFlux()
-                .filter(videogame -> videogame.getTotalSold() > 80)
-                .map(Videogame::getName);
+        return Flux.defer(() -> {
+            CatalogSnapshot snapshot = Database.snapshot();
+            return Flux.fromStream(Arrays.stream(snapshot.index().rowsSoldMoreThan(80)).mapToObj(snapshot.columns()::name));
+        });
     }
 }
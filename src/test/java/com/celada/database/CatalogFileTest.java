@@ -0,0 +1,96 @@
+package com.celada.database;
+
+import com.celada.models.Console;
+import com.celada.models.Videogame;
+import com.celada.pipeline.PipelineSumAllPricesInDiscount;
+import com.celada.pipeline.PipelineTopSelling;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should open a written snapshot with the same rows and index")
+    void shouldRoundTripSnapshots() {
+        CatalogSnapshot written = Database.snapshot();
+        Path file = this.directory.resolve("catalog.bin");
+        CatalogFile.write(written, file);
+
+        CatalogSnapshot opened = CatalogFile.open(file, true);
+
+        assertEquals(written.version(), opened.version());
+        assertEquals(written.videogames(), opened.videogames());
+        assertEquals(written.columns().sumPricesInDiscount(), opened.columns().sumPricesInDiscount());
+        assertArrayEquals(written.index().rowsSoldMoreThan(80), opened.index().rowsSoldMoreThan(80));
+        assertArrayEquals(written.index().rowsPricedBetween(20.0, 40.0), opened.index().rowsPricedBetween(20.0, 40.0));
+        assertArrayEquals(written.index().rowsAvailableOn(Console.XBOX), opened.index().rowsAvailableOn(Console.XBOX));
+        assertArrayEquals(written.index().rowsInDiscount(), opened.index().rowsInDiscount());
+
+        CatalogSnapshot empty = new CatalogSnapshot(1, List.of());
+        CatalogFile.write(empty, file);
+        assertTrue(CatalogFile.open(file, true).videogames().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should refuse corrupted snapshots and unknown format versions")
+    void shouldRefuseCorruptedSnapshots() throws IOException {
+        Path file = this.directory.resolve("catalog.bin");
+        CatalogFile.write(Database.snapshot(), file);
+
+        overwrite(file, Files.size(file) - 1, (byte) 0x7F);
+        assertEquals("Catalog snapshot " + file + " does not match its checksum",
+                assertThrows(IllegalStateException.class, () -> CatalogFile.open(file, true)).getMessage());
+        // Trusted, the checksum is not read
+        CatalogFile.open(file, false);
+
+        overwrite(file, Integer.BYTES, (byte) 9);
+        assertEquals("Unknown catalog snapshot format version 9",
+                assertThrows(IllegalStateException.class, () -> CatalogFile.open(file, false)).getMessage());
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IllegalStateException.class, () -> CatalogFile.open(file, false));
+    }
+
+    @Test
+    @DisplayName("Should publish an opened snapshot as the next version and query its mapped pages")
+    void shouldPublishOpenedSnapshots() {
+        CatalogSnapshot before = Database.snapshot();
+        Path file = this.directory.resolve("catalog.bin");
+        Database.writeSnapshot(file);
+
+        CatalogSnapshot opened = Database.openSnapshot(file);
+        try {
+            assertEquals(before.version() + 1, opened.version());
+            assertEquals(before.videogames(), Database.getDataAsFlux().collectList().block());
+            assertEquals(PipelineTopSelling.topSelling().collectList().block(),
+                    before.videogames().stream().filter(videogame -> videogame.getTotalSold() > 80).map(Videogame::getName).toList());
+            assertEquals(before.columns().sumPricesInDiscount(), PipelineSumAllPricesInDiscount.sumAllPricesInDiscount().block());
+        } finally {
+            Database.update(ignored -> before.videogames());
+        }
+    }
+
+    private static void overwrite(Path file, long position, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(1).order(ByteOrder.LITTLE_ENDIAN).put(0, value), position);
+        }
+    }
+}
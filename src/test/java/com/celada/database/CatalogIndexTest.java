@@ -0,0 +1,66 @@
+package com.celada.database;
+
+import com.celada.models.Console;
+import com.celada.models.Videogame;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogIndexTest {
+
+    @Test
+    @DisplayName("Should answer console queries like a scan, with ALL and DISABLED handled")
+    void shouldIndexConsoles() {
+        for (Console console : Console.values()) {
+            assertEquals(scan(videogame -> videogame.getConsole() == console), rows(Database.snapshot().index().rowsOn(console)));
+        }
+        assertEquals(scan(videogame -> videogame.getConsole() == Console.XBOX || videogame.getConsole() == Console.ALL),
+                Database.findAvailableOn(Console.XBOX).collectList().block());
+        assertEquals(scan(videogame -> videogame.getConsole() != Console.DISABLED),
+                Database.findAvailableOn(Console.ALL).collectList().block());
+        assertTrue(Database.findAvailableOn(Console.DISABLED).collectList().block().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should answer discount, sales and price queries like a scan")
+    void shouldIndexDiscountSalesAndPrices() {
+        assertEquals(scan(Videogame::isDiscount), Database.findInDiscount().collectList().block());
+        for (int totalSold : new int[]{Integer.MIN_VALUE, -1, 0, 50, 80, 81, 1_000, Integer.MAX_VALUE}) {
+            assertEquals(scan(videogame -> videogame.getTotalSold() > totalSold),
+                    Database.findSoldMoreThan(totalSold).collectList().block());
+        }
+        assertEquals(scan(videogame -> videogame.getPrice() >= 20.0 && videogame.getPrice() <= 40.0),
+                Database.findPricedBetween(20.0, 40.0).collectList().block());
+        assertEquals(scan(videogame -> true), Database.findPricedBetween(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY).collectList().block());
+    }
+
+    @Test
+    @DisplayName("Should never match missing sales or prices")
+    void shouldSkipMissingValues() {
+        Videogame missing = Videogame.builder().name("Missing fields").build();
+        Videogame known = Videogame.builder().name("Known").price(10.0).totalSold(5).console(Console.PC).build();
+        CatalogIndex index = CatalogIndex.of(ColumnarCatalog.of(List.of(missing, known)));
+
+        assertEquals(List.of(1), boxed(index.rowsSoldBetween(Integer.MIN_VALUE, Integer.MAX_VALUE)));
+        assertEquals(List.of(1), boxed(index.rowsPricedBetween(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY)));
+        assertEquals(List.of(1), boxed(index.rowsAvailableOn(Console.ALL)));
+    }
+
+    private static List<Videogame> scan(Predicate<Videogame> predicate) {
+        return Database.snapshot().videogames().stream().filter(predicate).toList();
+    }
+
+    private static List<Videogame> rows(int[] rows) {
+        return boxed(rows).stream().map(Database.snapshot().videogames()::get).toList();
+    }
+
+    private static List<Integer> boxed(int[] rows) {
+        return Arrays.stream(rows).boxed().toList();
+    }
+}
@@ -0,0 +1,122 @@
+package com.celada.database;
+
+import com.celada.models.Console;
+import com.celada.models.Review;
+import com.celada.models.Videogame;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should load the catalog back from CSV across many mapped windows")
+    void shouldLoadCatalogAcrossWindows() throws IOException {
+        List<Videogame> videogames = Database.snapshot().videogames();
+        Path file = Files.writeString(this.directory.resolve("catalog.csv"), toCsv(videogames), StandardCharsets.UTF_8);
+
+        // Windows far smaller than the file, most rows cross one
+        assertEquals(videogames, CatalogLoader.load(file, 512).collectList().block());
+        assertEquals(videogames, CatalogLoader.load(file).collectList().block());
+    }
+
+    @Test
+    @DisplayName("Should publish a loaded catalog as a new version built row by row")
+    void shouldPublishLoadedCatalog() throws IOException {
+        CatalogSnapshot before = Database.snapshot();
+        List<Videogame> videogames = before.videogames();
+        Path file = Files.writeString(this.directory.resolve("catalog.csv"), toCsv(videogames), StandardCharsets.UTF_8);
+
+        CatalogSnapshot loaded = Database.load(file).block();
+
+        assertEquals(before.version() + 1, loaded.version());
+        assertEquals(videogames, loaded.videogames());
+        assertEquals(videogames.stream().filter(videogame -> videogame.getTotalSold() > 80).toList(),
+                Database.findSoldMoreThan(80).collectList().block());
+    }
+
+    @Test
+    @DisplayName("Should parse quotes, CRLF, missing values and reviews, one row per request")
+    void shouldParseRowsOnDemand() throws IOException {
+        Path file = Files.writeString(this.directory.resolve("rows.csv"),
+                "name,price,console,officialWebsite,isDiscount,totalSold,comment,score\r\n"
+                        + "\"Quoted, \"\"name\"\"\",9.5,PC,,true,12,\"Multi\nline\",4,Fine,3\r\n"
+                        + "\r\n"
+                        + "Missing,,,,false,\n"
+                        + "Ñandú,1,MOBILE,https://example.com,false,0",
+                StandardCharsets.UTF_8);
+
+        StepVerifier.create(CatalogLoader.load(file, 128), 1)
+                .expectNext(Videogame.builder().name("Quoted, \"name\"").price(9.5).console(Console.PC).isDiscount(true).totalSold(12)
+                        .reviews(List.of(new Review("Multi\nline", 4), new Review("Fine", 3))).build())
+                .thenRequest(1)
+                .expectNext(Videogame.builder().name("Missing").reviews(List.of()).build())
+                .thenRequest(1)
+                .expectNext(Videogame.builder().name("Ñandú").price(1.0).console(Console.MOBILE)
+                        .officialWebsite("https://example.com").totalSold(0).reviews(List.of()).build())
+                .thenRequest(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should end rows on CRLF split at a window edge and at the end of the file")
+    void shouldSplitCrlfAcrossWindows() throws IOException {
+        String header = "h\r\n";
+        String fields = ",1,PC,,false,1";
+        // The \r of the first row is the last byte of the first window
+        String name = "x".repeat(64 - 1 - header.length() - fields.length());
+        Path file = Files.writeString(this.directory.resolve("crlf.csv"),
+                header + name + fields + "\r\n" + "Last,2,PC,,false,2\r", StandardCharsets.UTF_8);
+
+        StepVerifier.create(CatalogLoader.load(file, 64))
+                .expectNext(Videogame.builder().name(name).price(1.0).console(Console.PC).totalSold(1).reviews(List.of()).build())
+                .expectNext(Videogame.builder().name("Last").price(2.0).console(Console.PC).totalSold(2).reviews(List.of()).build())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should fail on malformed rows with their line")
+    void shouldFailOnMalformedRows() throws IOException {
+        Path file = Files.writeString(this.directory.resolve("malformed.csv"), "header\nGame,1,PC,,false,1\nGame,1,PC,,false\n");
+
+        StepVerifier.create(CatalogLoader.load(file))
+                .expectNextCount(1)
+                .expectErrorMessage("Malformed row at line 3: 5 fields")
+                .verify();
+    }
+
+    private static String toCsv(List<Videogame> videogames) {
+        StringBuilder csv = new StringBuilder("name,price,console,officialWebsite,isDiscount,totalSold,reviews\n");
+        for (Videogame videogame : videogames) {
+            csv.append(quote(videogame.getName())).append(',')
+                    .append(Objects.toString(videogame.getPrice(), "")).append(',')
+                    .append(Objects.toString(videogame.getConsole(), "")).append(',')
+                    .append(quote(Objects.toString(videogame.getOfficialWebsite(), ""))).append(',')
+                    .append(videogame.isDiscount()).append(',')
+                    .append(Objects.toString(videogame.getTotalSold(), ""));
+            csv.append(videogame.getReviews().stream()
+                    .map(review -> "," + quote(review.getComment()) + "," + review.getScore())
+                    .collect(Collectors.joining()));
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,84 @@
+package com.celada.database;
+
+import com.celada.models.Review;
+import com.celada.models.Videogame;
+import com.celada.pipeline.PipelineAllComments;
+import com.celada.pipeline.PipelineSumAllPricesInDiscount;
+import com.celada.pipeline.PipelineTopSelling;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ColumnarCatalogTest {
+
+    @Test
+    @DisplayName("Should materialize every row as the videogame it was built from")
+    void shouldMaterializeRows() {
+        CatalogSnapshot snapshot = Database.snapshot();
+        ColumnarCatalog columns = snapshot.columns();
+
+        assertEquals(snapshot.videogames().size(), columns.size());
+        for (int row = 0; row < columns.size(); row++) {
+            assertEquals(snapshot.videogames().get(row), columns.materialize(row));
+        }
+
+        Videogame missing = Videogame.builder().name("Missing fields").build();
+        assertEquals(missing.toBuilder().reviews(List.of()).build(), ColumnarCatalog.of(List.of(missing)).materialize(0));
+    }
+
+    @Test
+    @DisplayName("Should build each row once and share it with every reader")
+    void shouldShareMaterializedRows() {
+        ColumnarCatalog built = Database.snapshot().columns();
+        // Same columns without the videogames they were built from
+        ColumnarCatalog columns = new ColumnarCatalog(built.size(), built.prices(), built.discounts(), built.sales(), built.names(),
+                built.websites(), built.reviewOffsets(), built.reviewComments(), built.reviewScores(), built.consoles(),
+                built.dictionary());
+
+        assertSame(columns.asList(), columns.asList());
+        assertSame(columns.asList().get(0), columns.asList().get(0));
+        assertEquals(built.asList(), columns.asList());
+    }
+
+    @Test
+    @DisplayName("Should build the same columns one row at a time as from the whole list")
+    void shouldBuildRowByRow() {
+        List<Videogame> catalog = Database.snapshot().videogames();
+        List<Videogame> videogames = new ArrayList<>();
+        // Past the initial capacity of the builder, rows and reviews both grow
+        for (int i = 0; i < 10; i++) {
+            videogames.addAll(catalog);
+        }
+        videogames.add(Videogame.builder().name("Missing fields").build());
+
+        ColumnarCatalog.Builder builder = ColumnarCatalog.builder();
+        videogames.forEach(builder::add);
+        ColumnarCatalog columns = builder.build();
+
+        ColumnarCatalog expected = ColumnarCatalog.of(videogames);
+        assertEquals(expected.size(), columns.size());
+        assertEquals(expected.reviewCount(), columns.reviewCount());
+        assertEquals(expected.sumPricesInDiscount(), columns.sumPricesInDiscount());
+        for (int row = 0; row < columns.size(); row++) {
+            assertEquals(expected.materialize(row), columns.materialize(row));
+        }
+    }
+
+    @Test
+    @DisplayName("Should scan the columns to the same results as the videogames")
+    void shouldScanColumns() {
+        List<Videogame> videogames = Database.snapshot().videogames();
+
+        assertEquals(videogames.stream().filter(videogame -> videogame.getTotalSold() > 80).map(Videogame::getName).toList(),
+                PipelineTopSelling.topSelling().collectList().block());
+        assertEquals(videogames.stream().filter(Videogame::isDiscount).map(Videogame::getPrice).reduce(0.0, Double::sum),
+                PipelineSumAllPricesInDiscount.sumAllPricesInDiscount().block());
+        assertEquals(videogames.stream().flatMap(videogame -> videogame.getReviews().stream()).map(Review::getComment).toList(),
+                PipelineAllComments.getAllReviewsComments().collectList().block());
+    }
+}
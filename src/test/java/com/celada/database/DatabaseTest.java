@@ -0,0 +1,50 @@
+package com.celada.database;
+
+import com.celada.models.Videogame;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DatabaseTest {
+
+    @Test
+    @DisplayName("Should stream the same snapshot to every reader without copying it")
+    void shouldShareTheCurrentSnapshot() {
+        CatalogSnapshot snapshot = Database.snapshot();
+
+        assertSame(Database.getDataAsFlux(), Database.getDataAsFlux());
+        assertSame(snapshot, Database.snapshot());
+        assertSame(snapshot.videogames(), Database.snapshot().videogames());
+        assertSame(snapshot.videogames().get(0), Database.getDataAsFlux().blockFirst());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.videogames().clear());
+    }
+
+    @Test
+    @DisplayName("Should publish updates as a new version and leave older snapshots untouched")
+    void shouldPublishNewVersions() {
+        CatalogSnapshot before = Database.snapshot();
+        Videogame added = Videogame.builder().name("Test game").price(1.0).totalSold(0).reviews(List.of()).build();
+
+        CatalogSnapshot after = Database.update(videogames -> {
+            List<Videogame> next = new ArrayList<>(videogames);
+            next.add(added);
+            return next;
+        });
+
+        assertEquals(before.version() + 1, after.version());
+        assertEquals(before.videogames().size() + 1, after.videogames().size());
+        StepVerifier.create(Database.getDataAsFlux().last())
+                .expectNext(added)
+                .verifyComplete();
+
+        Database.update(videogames -> videogames.stream().filter(videogame -> videogame != added).toList());
+        assertEquals(before.videogames(), Database.snapshot().videogames());
+    }
+}
@@ -0,0 +1,177 @@
+package com.celada.notification.system;
+
+import com.celada.notification.system.config.OverflowConfig;
+import com.celada.notification.system.config.OverflowStrategy;
+import com.celada.notification.system.metrics.MetricsRegistry;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.Priority;
+import com.celada.notification.system.models.PublishResult;
+import com.celada.notification.system.storage.SpillQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestionQueueTest {
+
+    private Scheduler scheduler;
+    private CountDownLatch drainBlocked;
+    private Sinks.Many<NotificationEvent> sink;
+    private List<String> emitted;
+    private List<String> dropped;
+    private MetricsRegistry metrics;
+    // Whether the consumers behind the sink have room
+    private volatile boolean ready;
+
+    @BeforeEach
+    void setUp() {
+        this.scheduler = Schedulers.newSingle("ingestion-test");
+        // Holds the worker so the queue fills up
+        this.drainBlocked = new CountDownLatch(1);
+        this.scheduler.schedule(() -> {
+            try {
+                this.drainBlocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        this.sink = Sinks.many().multicast().onBackpressureBuffer();
+        this.emitted = new CopyOnWriteArrayList<>();
+        this.dropped = new CopyOnWriteArrayList<>();
+        this.sink.asFlux().subscribe(event -> this.emitted.add(event.getMessage()));
+        this.metrics = new MetricsRegistry();
+        this.ready = true;
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.scheduler.dispose();
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest LOW events first and never HIGH ones")
+    void shouldDropOldestLowPriorityFirst() throws InterruptedException {
+        IngestionQueue queue = this.createQueue(4, OverflowConfig.builder().strategy(OverflowStrategy.DROP_OLDEST_LOW_PRIORITY).build(), null);
+
+        queue.offer(event("L1", Priority.LOW));
+        queue.offer(event("L2", Priority.LOW));
+        queue.offer(event("H1", Priority.HIGH));
+        queue.offer(event("M1", Priority.MEDIUM));
+        assertEquals(PublishResult.ACCEPTED, queue.offer(event("H2", Priority.HIGH)));
+        assertEquals(PublishResult.ACCEPTED, queue.offer(event("L3", Priority.LOW)));
+        assertEquals(PublishResult.ACCEPTED, queue.offer(event("H3", Priority.HIGH)));
+        // Only HIGH and MEDIUM left, MEDIUM is never dropped for MEDIUM
+        assertEquals(PublishResult.REJECTED, queue.offer(event("M2", Priority.MEDIUM)));
+        assertEquals(PublishResult.ACCEPTED, queue.offer(event("H4", Priority.HIGH)));
+        assertEquals(PublishResult.REJECTED, queue.offer(event("H5", Priority.HIGH)));
+        this.releaseDrain();
+
+        assertEquals(List.of("L1", "L2", "L3", "M1"), this.dropped);
+        assertEquals(List.of("H1", "H2", "H3", "H4"), this.emitted);
+        assertEquals(3, this.metrics.counter("notification_overflow_total", "result", "dropped", "priority", "LOW").count());
+        assertEquals(2, this.metrics.counter("notification_overflow_total", "result", "rejected").count());
+    }
+
+    @Test
+    @DisplayName("Should block the producer until there is room or the timeout is over")
+    void shouldBlockProducer() throws InterruptedException {
+        IngestionQueue queue = this.createQueue(1, OverflowConfig.builder()
+                .strategy(OverflowStrategy.BLOCK)
+                .blockTimeout(Duration.ofMillis(50))
+                .build(), null);
+
+        queue.offer(event("E1", Priority.LOW));
+        long start = System.nanoTime();
+        assertEquals(PublishResult.REJECTED, queue.offer(event("E2", Priority.LOW)));
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+
+        IngestionQueue patient = this.createQueue(1, OverflowConfig.builder()
+                .strategy(OverflowStrategy.BLOCK)
+                .blockTimeout(Duration.ofSeconds(5))
+                .build(), null);
+        patient.offer(event("E3", Priority.LOW));
+        Schedulers.parallel().schedule(this.drainBlocked::countDown, 20, TimeUnit.MILLISECONDS);
+        assertEquals(PublishResult.ACCEPTED, patient.offer(event("E4", Priority.LOW)));
+        Thread.sleep(100);
+
+        assertEquals(List.of("E1", "E3", "E4"), this.emitted);
+        assertEquals(2, this.metrics.counter("notification_overflow_total", "result", "blocked").count());
+    }
+
+    @Test
+    @DisplayName("Should spill the overflow to disk and drain it in order")
+    void shouldSpillToDisk(@TempDir Path directory) throws InterruptedException {
+        SpillQueue spill = SpillQueue.open(directory.resolve("shard-0.spill"));
+        IngestionQueue queue = this.createQueue(2, OverflowConfig.builder().strategy(OverflowStrategy.SPILL_TO_DISK).build(), spill);
+
+        for (int i = 0; i < 5; i++) {
+            PublishResult expected = i < 2 ? PublishResult.ACCEPTED : PublishResult.SPILLED;
+            assertEquals(expected, queue.offer(event("E" + i, Priority.HIGH)));
+        }
+        assertEquals(3, queue.spilled());
+        this.releaseDrain();
+
+        assertEquals(List.of("E0", "E1", "E2", "E3", "E4"), this.emitted);
+        assertEquals(0, queue.spilled());
+        assertEquals(3, this.metrics.counter("notification_overflow_total", "result", "spilled").count());
+        queue.close();
+    }
+
+    @Test
+    @DisplayName("Should keep events queued and counted while the sink has no room")
+    void shouldHoldEventsUntilResumed(@TempDir Path directory) throws InterruptedException {
+        SpillQueue spill = SpillQueue.open(directory.resolve("shard-0.spill"));
+        IngestionQueue queue = this.createQueue(2, OverflowConfig.builder().strategy(OverflowStrategy.SPILL_TO_DISK).build(), spill);
+        this.ready = false;
+        this.releaseDrain();
+
+        for (int i = 0; i < 4; i++) {
+            queue.offer(event("E" + i, Priority.LOW));
+        }
+        Thread.sleep(100);
+        assertEquals(List.of(), this.emitted);
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.spilled());
+
+        this.ready = true;
+        queue.resume();
+        Thread.sleep(100);
+
+        assertEquals(List.of("E0", "E1", "E2", "E3"), this.emitted);
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.spilled());
+        queue.close();
+    }
+
+    private IngestionQueue createQueue(int capacity, OverflowConfig overflow, SpillQueue spill) {
+        return new IngestionQueue(capacity, overflow, spill, this.sink, event -> this.ready, this.metrics,
+                this.scheduler.createWorker(), event -> this.dropped.add(event.getMessage()));
+    }
+
+    private void releaseDrain() throws InterruptedException {
+        this.drainBlocked.countDown();
+        Thread.sleep(100);
+    }
+
+    private static NotificationEvent event(String message, Priority priority) {
+        return NotificationEvent.builder()
+                .source("TEST")
+                .message(message)
+                .priority(priority)
+                .build();
+    }
+}
@@ -1,23 +1,67 @@
 package com.celada.notification.system;
 
+import com.celada.notification.system.cache.CacheStats;
+import com.celada.notification.system.config.CacheConfig;
+import com.celada.notification.system.config.ChannelConfig;
+import com.celada.notification.system.config.CircuitBreakerConfig;
+import com.celada.notification.system.config.ConcurrencyLimitConfig;
+import com.celada.notification.system.config.DeadlineConfig;
+import com.celada.notification.system.config.DigestConfig;
+import com.celada.notification.system.config.DispatchConfig;
+import com.celada.notification.system.config.HedgeConfig;
+import com.celada.notification.system.config.NotificationSystemConfig;
+import com.celada.notification.system.config.OverflowConfig;
+import com.celada.notification.system.config.OverflowStrategy;
+import com.celada.notification.system.config.RetryConfig;
+import com.celada.notification.system.config.ShardConfig;
+import com.celada.notification.system.config.WalConfig;
+import com.celada.notification.system.id.IdGenerator;
+import com.celada.notification.system.metrics.LatencyHistogram;
+import com.celada.notification.system.metrics.MetricsRegistry;
 import com.celada.notification.system.models.NotificationEvent;
 import com.celada.notification.system.models.NotificationStatus;
 import com.celada.notification.system.models.Priority;
+import com.celada.notification.system.models.PublishResult;
+import com.celada.notification.system.resilience.CircuitBreaker;
+import com.celada.notification.system.resilience.TrafficBudget;
+import com.celada.notification.system.scheduler.SchedulerStrategy;
 import com.celada.notification.system.service.NotificationService;
+import com.celada.notification.system.storage.WriteAheadLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 import reactor.test.scheduler.VirtualTimeScheduler;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 class NotificationSystemTest {
@@ -84,6 +128,23 @@ class NotificationSystemTest {
 
     }
 
+    @Test
+    @DisplayName("Should send an event without priority like a LOW one")
+    void testMissingPriority() {
+        NotificationEvent event = this.createTestEvent(Priority.LOW);
+        event.setPriority(null);
+        event.setStatus(null);
+        assertEquals(PublishResult.ACCEPTED, this.target.publishEvent(event));
+        this.sleep(1000);
+
+        assertEquals(1, this.teamsCallCount.get());
+        assertEquals(0, this.emailCallCount.get());
+        assertEquals(0, this.phoneCallCount.get());
+        assertEquals(NotificationStatus.SENT, event.getStatus());
+        // Deadline budget of LOW events
+        assertTrue(event.getDeadline().isAfter(Instant.now().plus(Duration.ofMinutes(14))));
+    }
+
     @Test
     @DisplayName("Should send event with MEDIUM priority")
     void testMediumPriority() {
@@ -140,6 +201,493 @@ class NotificationSystemTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Should replay every status change of the window to late subscribers")
+    void shouldReplayLongHistory() {
+        for (int i = 0; i < 100; i++) {
+            this.target.publishEvent(this.createTestEvent(Priority.LOW));
+        }
+        this.sleep(1000);
+
+        // PENDING and SENT of each event
+        StepVerifier.create(this.target.getNotificationsHistory(Duration.ofMinutes(5)).take(200))
+                .expectNextCount(200)
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("Should deliver every event published to the same lane")
+    void shouldDeliverManyEventsPerLane() {
+        for (int i = 0; i < 20; i++) {
+            this.target.publishEvent(this.createTestEvent(Priority.HIGH));
+        }
+        this.sleep(1000);
+
+        assertEquals(20, this.teamsCallCount.get());
+        assertEquals(20, this.emailCallCount.get());
+        assertEquals(20, this.phoneCallCount.get());
+    }
+
+    @Test
+    @DisplayName("Should coalesce events in batches and map results back to each event")
+    void shouldSendEventsInBatches() {
+        AtomicInteger batchCount = new AtomicInteger(0);
+        when(this.mockTeamsService.sendNotifications(anyList()))
+                .thenAnswer(i -> {
+                    batchCount.incrementAndGet();
+                    List<NotificationEvent> events = i.getArgument(0);
+                    // Reject every event with a FAIL message
+                    return Mono.just(events.stream()
+                            .map(event -> !event.getMessage().startsWith("FAIL"))
+                            .toList());
+                });
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .teams(ChannelConfig.builder().batchSize(10).batchMaxWait(Duration.ofMillis(100)).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        List<NotificationEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            NotificationEvent event = this.createTestEvent(Priority.LOW);
+            if (i % 2 == 0) {
+                event.setMessage("FAIL " + event.getMessage());
+            }
+            events.add(event);
+            target.publishEvent(event);
+        }
+        this.sleep(1000);
+
+        verify(this.mockTeamsService, never()).sendNotification(any());
+        assertTrue(batchCount.get() <= 3);
+        for (int i = 0; i < events.size(); i++) {
+            NotificationStatus expected = i % 2 == 0 ? NotificationStatus.FAILED : NotificationStatus.SENT;
+            StepVerifier.create(target.getNotificationById(events.get(i).getId()))
+                    .expectNextMatches(event -> expected.equals(event.getStatus()))
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    @DisplayName("Should accept events published from many threads at the same time")
+    void shouldAcceptEventsFromConcurrentProducers() throws InterruptedException {
+        int producers = 8;
+        int eventsPerProducer = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger(0);
+
+        for (int p = 0; p < producers; p++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    if (PublishResult.ACCEPTED.equals(this.target.publishEvent(this.createTestEvent(Priority.LOW)))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        this.sleep(2000);
+
+        assertEquals(producers * eventsPerProducer, accepted.get());
+        assertEquals(producers * eventsPerProducer, this.teamsCallCount.get());
+    }
+
+    @Test
+    @DisplayName("Should bound the cache by entries and expire SENT events")
+    void shouldBoundAndExpireCache() {
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .cache(CacheConfig.builder().maxEntries(32).sentTtl(Duration.ofMillis(500)).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        for (int i = 0; i < 200; i++) {
+            target.publishEvent(this.createTestEvent(Priority.LOW));
+        }
+        this.sleep(200);
+
+        CacheStats stats = target.getCacheStats();
+        assertTrue(stats.getSize() <= 32);
+        assertEquals(200 - stats.getSize(), stats.getEvictions());
+
+        NotificationEvent event = this.createTestEvent(Priority.LOW);
+        target.publishEvent(event);
+        this.sleep(1000);
+
+        StepVerifier.create(target.getNotificationById(event.getId()))
+                .verifyComplete();
+        assertTrue(target.getCacheStats().getExpirations() > 0);
+    }
+
+    @Test
+    @DisplayName("Should publish again only FAILED events")
+    void shouldRetryFailedNotifications() {
+        AtomicInteger attempts = new AtomicInteger(0);
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    NotificationEvent event = i.getArgument(0);
+                    // First attempt of the FAIL event fails
+                    if (event.getMessage().startsWith("FAIL") && attempts.incrementAndGet() == 1) {
+                        return Mono.error(new RuntimeException("Failed to send teams notification"));
+                    }
+                    return Mono.just(true);
+                });
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .teams(ChannelConfig.builder().retry(RetryConfig.builder().maxRetries(0).build()).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        NotificationEvent failing = this.createTestEvent(Priority.LOW);
+        failing.setMessage("FAIL " + failing.getMessage());
+        target.publishEvent(failing);
+        target.publishEvent(this.createTestEvent(Priority.LOW));
+        this.sleep(500);
+
+        StepVerifier.create(target.retryFailedNotification())
+                .expectNextMatches(event -> failing.getId().equals(event.getId()))
+                .verifyComplete();
+        this.sleep(500);
+
+        StepVerifier.create(target.getNotificationById(failing.getId()))
+                .expectNextMatches(event -> NotificationStatus.SENT.equals(event.getStatus()))
+                .verifyComplete();
+        StepVerifier.create(target.retryFailedNotification())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should take the next FAILED events on every paged sweep and send the first group at once")
+    void shouldSweepEachFailedEventOnce() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                // Republished sends stay in flight
+                .thenAnswer(i -> failing.get() ? Mono.error(new RuntimeException("Failed to send teams notification")) : Mono.never());
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .teams(ChannelConfig.builder().retry(RetryConfig.builder().maxRetries(0).build()).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        for (int i = 0; i < 6; i++) {
+            target.publishEvent(this.createTestEvent(Priority.LOW));
+        }
+        this.sleep(500);
+        failing.set(false);
+
+        List<String> first = target.retryFailedNotification(2).map(NotificationEvent::getId).collectList().block();
+        List<String> second = target.retryFailedNotification(2).map(NotificationEvent::getId).collectList().block();
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertTrue(first.stream().noneMatch(second::contains), first + " " + second);
+
+        StepVerifier.create(target.retryFailedNotification(2, Duration.ofMinutes(1)))
+                .expectNextCount(2)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(target.retryFailedNotification())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should stop calling a failing channel once its circuit breaker opens")
+    void shouldOpenCircuitBreaker() {
+        AtomicInteger calls = new AtomicInteger(0);
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> Mono.defer(() -> {
+                    calls.incrementAndGet();
+                    return Mono.error(new RuntimeException("Failed to send teams notification"));
+                }));
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .teams(ChannelConfig.builder()
+                        .concurrency(1)
+                        .retry(RetryConfig.builder().maxRetries(0).build())
+                        .circuitBreaker(CircuitBreakerConfig.builder()
+                                .windowSize(10)
+                                .minimumCalls(5)
+                                .openDuration(Duration.ofMinutes(1))
+                                .build())
+                        .build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        List<NotificationEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            NotificationEvent event = this.createTestEvent(Priority.LOW);
+            events.add(event);
+            target.publishEvent(event);
+        }
+        this.sleep(1000);
+
+        assertEquals(5, calls.get());
+        events.forEach(event -> assertEquals(NotificationStatus.FAILED, event.getStatus()));
+    }
+
+    @Test
+    @DisplayName("Should retry a failed send with backoff until it succeeds")
+    void shouldRetryWithBackoff() {
+        AtomicInteger attempts = new AtomicInteger(0);
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> Mono.defer(() -> attempts.incrementAndGet() <= 2
+                        ? Mono.error(new RuntimeException("Failed to send teams notification"))
+                        : Mono.just(true)));
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .teams(ChannelConfig.builder()
+                        .retry(RetryConfig.builder().maxRetries(3).initialBackoff(Duration.ofMillis(50)).build())
+                        .build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        NotificationEvent event = this.createTestEvent(Priority.LOW);
+        target.publishEvent(event);
+        this.sleep(1000);
+
+        assertEquals(3, attempts.get());
+        assertEquals(NotificationStatus.SENT, event.getStatus());
+    }
+
+    @Test
+    @DisplayName("Should run blocking sends on virtual threads and dispose them on close")
+    void shouldSendOnVirtualThreads() {
+        AtomicInteger virtualSends = new AtomicInteger(0);
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> Mono.fromCallable(() -> {
+                    if (Thread.currentThread().isVirtual()) {
+                        virtualSends.incrementAndGet();
+                    }
+                    return true;
+                }));
+
+        SchedulerStrategy virtualThreads = SchedulerStrategy.virtualThreads();
+        List<Scheduler> schedulers = new CopyOnWriteArrayList<>();
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .schedulerStrategy(new SchedulerStrategy() {
+                    @Override
+                    public Scheduler schedulerFor(String channel) {
+                        Scheduler scheduler = virtualThreads.schedulerFor(channel);
+                        schedulers.add(scheduler);
+                        return scheduler;
+                    }
+
+                    @Override
+                    public void release(String channel, Scheduler scheduler) {
+                        virtualThreads.release(channel, scheduler);
+                    }
+                })
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        for (int i = 0; i < 10; i++) {
+            target.publishEvent(this.createTestEvent(Priority.LOW));
+        }
+        this.sleep(500);
+
+        assertEquals(10, virtualSends.get());
+        target.close();
+        assertEquals(3, schedulers.size());
+        assertTrue(schedulers.stream().allMatch(Scheduler::isDisposed));
+    }
+
+    @Test
+    @DisplayName("Should send a HIGH event before LOW events queued ahead of it")
+    void shouldDispatchHighPriorityFirst() {
+        List<Priority> sent = new CopyOnWriteArrayList<>();
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    NotificationEvent event = i.getArgument(0);
+                    return Mono.fromCallable(() -> {
+                        sent.add(event.getPriority());
+                        Thread.sleep(50);
+                        return true;
+                    });
+                });
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .teams(ChannelConfig.builder()
+                        .concurrency(1)
+                        .concurrencyLimit(ConcurrencyLimitConfig.builder().enabled(false).build())
+                        .build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        for (int i = 0; i < 5; i++) {
+            target.publishEvent(this.createTestEvent(Priority.LOW));
+        }
+        target.publishEvent(this.createTestEvent(Priority.HIGH));
+        this.sleep(1000);
+
+        assertEquals(6, sent.size());
+        // First LOW was already being sent
+        assertEquals(Priority.HIGH, sent.get(1));
+    }
+
+    @Test
+    @DisplayName("Should send a HIGH event before a LOW backlog waiting for the concurrency limit")
+    void shouldGrantConcurrencyLimitByPriority() {
+        List<Priority> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch published = new CountDownLatch(1);
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    NotificationEvent event = i.getArgument(0);
+                    return Mono.fromCallable(() -> {
+                        sent.add(event.getPriority());
+                        // Sends hold their permits until the whole backlog is queued
+                        published.await();
+                        Thread.sleep(20);
+                        return true;
+                    });
+                });
+
+        // Default concurrency of 32 over a limit of 2, the lane takes 30 events more than it can send
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .teams(ChannelConfig.builder()
+                        .concurrencyLimit(ConcurrencyLimitConfig.builder().initialLimit(2).build())
+                        .build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        for (int i = 0; i < 60; i++) {
+            target.publishEvent(this.createTestEvent(Priority.LOW));
+        }
+        target.publishEvent(this.createTestEvent(Priority.HIGH));
+        published.countDown();
+        this.sleep(1500);
+
+        assertEquals(61, sent.size());
+        // Only the sends already running and the permits they freed before it was taken from the lane go first
+        assertTrue(sent.indexOf(Priority.HIGH) <= 6, "HIGH sent at " + sent.indexOf(Priority.HIGH));
+    }
+
+    @Test
+    @DisplayName("Should publish again on startup the events a previous run did not send")
+    void shouldReplayWriteAheadLogOnStartup(@TempDir Path directory) {
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> Mono.error(new RuntimeException("Failed to send teams notification")));
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .wal(WalConfig.builder().enabled(true).directory(directory).segmentSize(1024 * 1024).build())
+                .teams(ChannelConfig.builder().retry(RetryConfig.builder().maxRetries(0).build()).build())
+                .build();
+        NotificationEvent event = this.createTestEvent(Priority.LOW);
+        try (NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config)) {
+            target.publishEvent(event);
+            this.sleep(500);
+        }
+
+        NotificationService recoveredTeamsService = mock(NotificationService.class);
+        when(recoveredTeamsService.sendNotification(any(NotificationEvent.class))).thenReturn(Mono.just(true));
+        try (NotificationSystem target = new NotificationSystem(recoveredTeamsService, this.mockEmailService, this.mockPhoneService, config)) {
+            this.sleep(500);
+
+            verify(recoveredTeamsService, times(1)).sendNotification(argThat(recovered -> event.getId().equals(recovered.getId())));
+            StepVerifier.create(target.getNotificationById(event.getId()))
+                    .expectNextMatches(recovered -> NotificationStatus.SENT.equals(recovered.getStatus()))
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    @DisplayName("Should publish every recovered event even when they do not fit in the ingestion queue")
+    void shouldRecoverMoreEventsThanIngestionCapacity(@TempDir Path directory) {
+        WalConfig wal = WalConfig.builder().enabled(true).directory(directory).segmentSize(1024 * 1024).build();
+        int events = 200;
+        try (WriteAheadLog previousRun = WriteAheadLog.open(wal)) {
+            for (int i = 0; i < events; i++) {
+                NotificationEvent event = this.createTestEvent(Priority.LOW);
+                event.setDeadline(Instant.now().plusSeconds(60));
+                previousRun.appendEvent(event);
+            }
+        }
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .wal(wal)
+                .sharding(ShardConfig.builder().enabled(true).shards(2).build())
+                .ingestionCapacity(2)
+                .build();
+        try (NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config)) {
+            this.sleep(1000);
+
+            assertEquals(events, this.teamsCallCount.get());
+        }
+        try (WriteAheadLog nextRun = WriteAheadLog.open(wal)) {
+            assertTrue(nextRun.getRecoveredEvents().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should spill to disk while a slow lane holds the ingestion queue full, and send the spill in order")
+    void shouldSpillBehindSlowLane(@TempDir Path directory) {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> sent = this.holdTeamsSends(release);
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .ingestionCapacity(4)
+                .overflow(OverflowConfig.builder().strategy(OverflowStrategy.SPILL_TO_DISK).spillDirectory(directory).build())
+                .teams(this.slowLane())
+                .build();
+        List<String> published = new ArrayList<>();
+        List<PublishResult> results = new ArrayList<>();
+        try (NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config)) {
+            for (int i = 0; i < 20; i++) {
+                NotificationEvent event = this.createTestEvent(Priority.LOW);
+                published.add(event.getId());
+                results.add(target.publishEvent(event));
+                // Lets the lane take what fits before the next event
+                this.sleep(10);
+            }
+
+            // One send in flight and two buffered by the lane, four in the ingestion queue
+            assertEquals(13, results.stream().filter(PublishResult.SPILLED::equals).count());
+            assertEquals(13, target.getMetrics().counter("notification_overflow_total", "result", "spilled").count());
+            release.countDown();
+            this.sleep(1000);
+
+            assertEquals(published, sent);
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest LOW events while a slow lane holds the ingestion queue full")
+    void shouldDropBehindSlowLane() {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> sent = this.holdTeamsSends(release);
+
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .ingestionCapacity(4)
+                .overflow(OverflowConfig.builder().strategy(OverflowStrategy.DROP_OLDEST_LOW_PRIORITY).build())
+                .teams(this.slowLane())
+                .build();
+        List<NotificationEvent> published = new ArrayList<>();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+        for (int i = 0; i < 10; i++) {
+            NotificationEvent event = this.createTestEvent(Priority.LOW);
+            published.add(event);
+            assertEquals(PublishResult.ACCEPTED, target.publishEvent(event));
+            this.sleep(10);
+        }
+        NotificationEvent high = this.createTestEvent(Priority.HIGH);
+        assertEquals(PublishResult.ACCEPTED, target.publishEvent(high));
+        release.countDown();
+        this.sleep(1000);
+
+        // The lane took the first three, the next four were the oldest LOW events queued
+        assertEquals(4, target.getMetrics().counter("notification_overflow_total", "result", "dropped", "priority", "LOW").count());
+        for (NotificationEvent dropped : published.subList(3, 7)) {
+            assertFalse(sent.contains(dropped.getId()));
+            StepVerifier.create(target.getNotificationById(dropped.getId()))
+                    .expectNextMatches(event -> NotificationStatus.FAILED.equals(event.getStatus()))
+                    .verifyComplete();
+        }
+        assertEquals(7, sent.size());
+        assertTrue(sent.contains(high.getId()));
+    }
 
 //    @Test
 //    @DisplayName("Should retry phone notification 3 times")
@@ -194,11 +742,401 @@ class NotificationSystemTest {
 
         NotificationEvent event = this.createTestEvent(Priority.HIGH);
         target.publishEvent(event);
+        // Sends subscribe on worker threads, let them schedule their delays before moving the clock
+        this.sleep(200);
 
         scheduler.advanceTimeBy(Duration.ofMillis(1500));
-        StepVerifier.withVirtualTime(() -> target.getNotificationsHistory().take(1))
+        // History keeps a snapshot of each status change
+        StepVerifier.withVirtualTime(() -> target.getNotificationsHistory().take(2))
+                .expectNextMatches(element -> NotificationStatus.PENDING.equals(element.getStatus()))
+                .expectNextMatches(element -> NotificationStatus.SENT.equals(element.getStatus()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should record latency and outcome of every send per channel")
+    void shouldRecordChannelMetrics() {
+        when(this.mockEmailService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> Mono.error(new RuntimeException("Failed to send email notification")));
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .email(ChannelConfig.builder().retry(RetryConfig.builder().maxRetries(1).initialBackoff(Duration.ofMillis(10)).build()).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        for (int i = 0; i < 10; i++) {
+            target.publishEvent(this.createTestEvent(Priority.MEDIUM));
+        }
+        this.sleep(1000);
+
+        MetricsRegistry metrics = target.getMetrics();
+        assertEquals(10, metrics.counter("notification_sent_total", "channel", "Teams-Channel").count());
+        assertEquals(10, metrics.counter("notification_failed_total", "channel", "Email-Channel").count());
+        assertEquals(10, metrics.counter("notification_retries_total", "channel", "Email-Channel").count());
+        assertEquals(10, metrics.histogram("notification_send_latency_nanos", "channel", "Teams-Channel").count());
+        assertTrue(metrics.histogram("notification_send_latency_nanos", "channel", "Teams-Channel").percentile(0.99) > 0);
+        assertEquals(0, metrics.gaugeValue("notification_queue_depth", "queue", "Teams-Channel"));
+        assertTrue(metrics.scrape().contains("notification_send_latency_nanos{channel=\"Teams-Channel\",quantile=\"0.99\"}"));
+    }
+
+    @Test
+    @DisplayName("Should keep the order of each source across shards")
+    void shouldKeepSourceOrderAcrossShards() throws InterruptedException {
+        List<NotificationEvent> sent = new CopyOnWriteArrayList<>();
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    sent.add(i.getArgument(0));
+                    return Mono.just(true);
+                });
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .sharding(ShardConfig.builder().enabled(true).shards(4).build())
+                // One send at a time, so the sends keep the order events leave the shards
+                .teams(ChannelConfig.builder().concurrency(1).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        int sources = 8;
+        int eventsPerSource = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(sources);
+        for (int s = 0; s < sources; s++) {
+            String source = "SOURCE-" + s;
+            executor.submit(() -> {
+                for (int i = 0; i < eventsPerSource; i++) {
+                    NotificationEvent event = this.createTestEvent(Priority.LOW);
+                    event.setSource(source);
+                    event.setMessage(String.valueOf(i));
+                    target.publishEvent(event);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        this.sleep(2000);
+
+        assertEquals(sources * eventsPerSource, sent.size());
+        Map<String, Integer> lastBySource = new HashMap<>();
+        for (NotificationEvent event : sent) {
+            int sequence = Integer.parseInt(event.getMessage());
+            assertEquals(lastBySource.getOrDefault(event.getSource(), -1) + 1, sequence);
+            lastBySource.put(event.getSource(), sequence);
+        }
+        target.close();
+    }
+
+    @Test
+    @DisplayName("Should find cached events by creation time")
+    void shouldFindEventsByCreationTime() {
+        Instant start = Instant.now();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            NotificationEvent event = this.createTestEvent(Priority.LOW);
+            // Status left empty so publishEvent assigns a time ordered id
+            event.setStatus(null);
+            this.target.publishEvent(event);
+            ids.add(event.getId());
+        }
+        this.target.publishEvent(this.createTestEvent(Priority.LOW));
+        this.sleep(100);
+
+        StepVerifier.create(this.target.getNotificationsCreatedBetween(start, Instant.now().plusMillis(1)).map(NotificationEvent::getId))
+                .expectNextSequence(ids)
+                .verifyComplete();
+        StepVerifier.create(this.target.getNotificationsCreatedBetween(start.minusSeconds(60), start))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should send one digest per source window and keep the status of each event")
+    void shouldDigestLowPriorityEventsPerSource() {
+        List<NotificationEvent> sent = new CopyOnWriteArrayList<>();
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    sent.add(i.getArgument(0));
+                    return Mono.just(true);
+                });
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .digest(DigestConfig.builder().enabled(true).window(Duration.ofMillis(200)).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        List<NotificationEvent> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            NotificationEvent event = this.createTestEvent(Priority.LOW);
+            event.setSource(i % 2 == 0 ? "CHATTY-A" : "CHATTY-B");
+            events.add(event);
+            target.publishEvent(event);
+        }
+        target.publishEvent(this.createTestEvent(Priority.HIGH));
+        this.sleep(1000);
+
+        // One digest per source and the HIGH event
+        assertEquals(3, sent.size());
+        assertTrue(sent.stream().anyMatch(event -> event.getMessage().startsWith("25 notifications from CHATTY-A")));
+        assertEquals(50, target.getMetrics().counter("notification_digested_events_total").count());
+        for (NotificationEvent event : events) {
+            StepVerifier.create(target.getNotificationById(event.getId()))
+                    .expectNextMatches(cached -> NotificationStatus.SENT.equals(cached.getStatus()))
+                    .verifyComplete();
+        }
+        target.close();
+    }
+
+    @Test
+    @DisplayName("Should forget the window of a source once it is flushed")
+    void shouldForgetFlushedDigestWindows() {
+        List<NotificationEvent> routed = new CopyOnWriteArrayList<>();
+        NotificationDigest digest = new NotificationDigest(DigestConfig.builder().enabled(true).window(Duration.ofMillis(100)).maxEvents(3).build(),
+                IdGenerator.monotonic(), new MetricsRegistry());
+        digest.start(routed::add, event -> 1);
+
+        for (int i = 0; i < 1000; i++) {
+            NotificationEvent event = this.createTestEvent(Priority.LOW);
+            event.setSource("SOURCE-" + i);
+            digest.emit(event);
+        }
+        assertEquals(1000, digest.openWindows());
+        this.sleep(500);
+
+        assertEquals(0, digest.openWindows());
+        assertEquals(1000, routed.size());
+        digest.close();
+    }
+
+    @Test
+    @DisplayName("Should hedge a straggler send and take the first success")
+    void shouldHedgeSlowSends() {
+        AtomicInteger stragglerCalls = new AtomicInteger(0);
+        when(this.mockPhoneService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    NotificationEvent event = i.getArgument(0);
+                    // Each subscription is an attempt, like the real services
+                    return Mono.defer(() -> {
+                        if (event.getMessage().startsWith("STRAGGLER") && stragglerCalls.incrementAndGet() == 1) {
+                            // Only the first attempt is slow
+                            return Mono.delay(Duration.ofSeconds(3)).thenReturn(true);
+                        }
+                        return Mono.just(true);
+                    });
+                });
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .phone(ChannelConfig.builder()
+                        .hedge(HedgeConfig.builder().enabled(true).minSamples(20).minDelay(Duration.ofMillis(50)).build())
+                        .build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        for (int i = 0; i < 20; i++) {
+            target.publishEvent(this.createTestEvent(Priority.HIGH));
+        }
+        this.sleep(200);
+        NotificationEvent straggler = this.createTestEvent(Priority.HIGH);
+        straggler.setMessage("STRAGGLER " + straggler.getMessage());
+        target.publishEvent(straggler);
+        this.sleep(500);
+
+        StepVerifier.create(target.getNotificationById(straggler.getId()))
+                .expectNextMatches(event -> NotificationStatus.SENT.equals(event.getStatus()))
+                .verifyComplete();
+        assertEquals(2, stragglerCalls.get());
+        assertEquals(1, target.getMetrics().counter("notification_hedges_total", "channel", "Phone-Channel").count());
+        assertEquals(21, target.getMetrics().counter("notification_sent_total", "channel", "Phone-Channel").count());
+    }
+
+    @Test
+    @DisplayName("Should let a losing hedge finish without counting it as failed")
+    void shouldNotFailLosingHedges() {
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    NotificationEvent event = i.getArgument(0);
+                    AtomicInteger eventAttempts = attempts.computeIfAbsent(event.getId(), id -> new AtomicInteger());
+                    return Mono.defer(() -> {
+                        if (!event.getMessage().startsWith("STRAGGLER")) {
+                            return Mono.just(true);
+                        }
+                        // The first attempt wins over its slower hedge
+                        return Mono.delay(Duration.ofMillis(eventAttempts.incrementAndGet() == 1 ? 150 : 600)).thenReturn(true);
+                    });
+                });
+        MetricsRegistry metrics = new MetricsRegistry();
+        NotificationLane lane = new NotificationLane("Teams-Channel", this.mockTeamsService,
+                ChannelConfig.builder()
+                        .retry(RetryConfig.builder().maxRetries(0).build())
+                        .hedge(HedgeConfig.builder().enabled(true).minSamples(20).minDelay(Duration.ofMillis(50)).build())
+                        // Opens if the losing hedges count as failures
+                        .circuitBreaker(CircuitBreakerConfig.builder().windowSize(10).minimumCalls(10).build())
+                        .build(),
+                DispatchConfig.builder().build(), new TrafficBudget(0.1, 10), Schedulers.immediate(), metrics);
+        AtomicInteger delivered = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        lane.start(new NotificationLane.DeliveryListener() {
+            @Override
+            public void onSuccess(NotificationEvent event, String channel) {
+                delivered.incrementAndGet();
+            }
+
+            @Override
+            public void onError(NotificationEvent event, String channel, Throwable error) {
+                failed.incrementAndGet();
+            }
+        });
+
+        for (int i = 0; i < 20; i++) {
+            lane.emit(this.createTestEvent(Priority.LOW));
+        }
+        this.sleep(200);
+        int limit = lane.getConcurrencyLimiter().getLimit();
+        for (int i = 0; i < 5; i++) {
+            NotificationEvent straggler = this.createTestEvent(Priority.LOW);
+            straggler.setMessage("STRAGGLER " + straggler.getMessage());
+            lane.emit(straggler);
+        }
+        this.sleep(1000);
+
+        assertEquals(25, delivered.get());
+        assertEquals(0, failed.get());
+        assertEquals(5, metrics.counter("notification_hedges_total", "channel", "Teams-Channel").count());
+        // Both attempts of every straggler measured once, the losers at their full latency
+        assertEquals(30, metrics.histogram("notification_send_latency_nanos", "channel", "Teams-Channel").count());
+        assertEquals(CircuitBreaker.State.CLOSED, lane.getCircuitBreaker().getState());
+        assertEquals(limit, lane.getConcurrencyLimiter().getLimit());
+        assertEquals(0, lane.getConcurrencyLimiter().getInFlight());
+    }
+
+    @Test
+    @DisplayName("Should expire events past their deadline without sending them")
+    void shouldExpireLateEvents() {
+        NotificationEvent event = this.createTestEvent(Priority.HIGH);
+        event.setDeadline(Instant.now().minusSeconds(1));
+        this.target.publishEvent(event);
+        this.sleep(200);
+
+        StepVerifier.create(this.target.getNotificationById(event.getId()))
+                .expectNextMatches(cached -> NotificationStatus.EXPIRED.equals(cached.getStatus()))
+                .verifyComplete();
+        assertEquals(0, this.teamsCallCount.get() + this.emailCallCount.get() + this.phoneCallCount.get());
+    }
+
+    @Test
+    @DisplayName("Should cancel a hung send when the deadline of the event is over")
+    void shouldCancelHungSendAtDeadline() {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> Mono.fromCallable(() -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                    return true;
+                }));
+        NotificationSystemConfig config = NotificationSystemConfig.builder()
+                .deadlines(DeadlineConfig.builder().low(Duration.ofMillis(300)).build())
+                .build();
+        NotificationSystem target = new NotificationSystem(this.mockTeamsService, this.mockEmailService, this.mockPhoneService, config);
+
+        NotificationEvent event = this.createTestEvent(Priority.LOW);
+        target.publishEvent(event);
+        this.sleep(1000);
+
+        StepVerifier.create(target.getNotificationById(event.getId()))
+                .expectNextMatches(cached -> NotificationStatus.EXPIRED.equals(cached.getStatus()))
+                .verifyComplete();
+        // The worker thread is given back
+        assertEquals(0, interrupted.getCount());
+        assertEquals(1, target.getMetrics().counter("notification_expired_total", "channel", "Teams-Channel").count());
+        assertEquals(0, target.getMetrics().counter("notification_retries_total", "channel", "Teams-Channel").count());
+        // The hung call is measured up to its cancellation
+        LatencyHistogram latency = target.getMetrics().histogram("notification_send_latency_nanos", "channel", "Teams-Channel");
+        assertEquals(1, latency.count());
+        assertTrue(latency.max() >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    @DisplayName("Should hand status changes only to the watchers of the event and its source")
+    void shouldWatchEventsAndSources() {
+        NotificationEvent event = this.createTestEvent(Priority.LOW);
+        event.setSource("WATCHED");
+        List<NotificationEvent> otherSource = new CopyOnWriteArrayList<>();
+        this.target.watchSource("OTHER").subscribe(otherSource::add);
+
+        StepVerifier.create(this.target.watch(event.getId()))
+                .then(() -> this.target.publishEvent(event))
+                .expectNextMatches(element -> NotificationStatus.PENDING.equals(element.getStatus()))
                 .expectNextMatches(element -> NotificationStatus.SENT.equals(element.getStatus()))
                 .verifyComplete();
+        StepVerifier.create(this.target.watchSource("WATCHED").take(2))
+                .then(() -> this.target.publishEvent(this.createTestEvent(Priority.LOW)))
+                .then(() -> {
+                    NotificationEvent next = this.createTestEvent(Priority.LOW);
+                    next.setSource("WATCHED");
+                    this.target.publishEvent(next);
+                })
+                .expectNextMatches(element -> "WATCHED".equals(element.getSource()))
+                .expectNextMatches(element -> "WATCHED".equals(element.getSource()))
+                .verifyComplete();
+        // A SENT event is watched from its cached status and completes at once
+        StepVerifier.create(this.target.watch(event.getId()))
+                .expectNextMatches(element -> NotificationStatus.SENT.equals(element.getStatus()))
+                .verifyComplete();
+
+        assertTrue(otherSource.isEmpty());
+        assertEquals(1, this.target.getMetrics().gaugeValue("notification_watchers"));
+    }
+
+    @Test
+    @DisplayName("Should request events from upstream prefetch at a time")
+    void shouldPrefetchFromUpstream() {
+        NotificationLane lane = new NotificationLane("Teams-Channel", this.mockTeamsService,
+                ChannelConfig.builder().concurrency(2).prefetch(8).build(), DispatchConfig.builder().build(),
+                new TrafficBudget(0.1, 10), Schedulers.immediate(), new MetricsRegistry());
+        List<Long> requests = new CopyOnWriteArrayList<>();
+        AtomicInteger delivered = new AtomicInteger();
+
+        lane.start(Flux.range(0, 100).map(i -> this.createTestEvent(Priority.LOW)).doOnRequest(requests::add),
+                new NotificationLane.DeliveryListener() {
+                    @Override
+                    public void onSuccess(NotificationEvent event, String channel) {
+                        delivered.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError(NotificationEvent event, String channel, Throwable error) {
+                    }
+                });
+
+        assertEquals(100, delivered.get());
+        // Not the concurrency of the sends, nor unbounded
+        assertEquals(8, requests.get(0));
+        assertTrue(requests.stream().allMatch(request -> request <= 8), requests.toString());
+    }
+
+    /**
+     * @return Ids of the events sent on Teams, every send waits for the release
+     */
+    private List<String> holdTeamsSends(CountDownLatch release) {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        when(this.mockTeamsService.sendNotification(any(NotificationEvent.class)))
+                .thenAnswer(i -> {
+                    NotificationEvent event = i.getArgument(0);
+                    return Mono.fromCallable(() -> {
+                        release.await();
+                        sent.add(event.getId());
+                        return true;
+                    });
+                });
+        return sent;
+    }
+
+    /**
+     * @return Teams lane sending one event at a time and buffering two
+     */
+    private ChannelConfig slowLane() {
+        return ChannelConfig.builder()
+                .concurrency(1)
+                .prefetch(1)
+                .bufferCapacity(2)
+                .build();
     }
 
     private NotificationEvent createTestEvent(Priority priority) {
@@ -0,0 +1,165 @@
+package com.celada.notification.system.history;
+
+import com.celada.notification.system.config.HistoryConfig;
+import com.celada.notification.system.metrics.MetricsRegistry;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+import com.celada.notification.system.models.Priority;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationHistoryTest {
+
+    @Test
+    @DisplayName("Should keep the newest entries in order once the buffer wraps around")
+    void shouldOverwriteOldestEntries() {
+        NotificationHistory history = new NotificationHistory(HistoryConfig.builder().capacityBytes(4096).build(), new MetricsRegistry());
+        IntStream.range(0, 1000).forEach(i -> history.record(this.createEvent(i)));
+
+        List<String> ids = history.replay().take(history.size())
+                .map(NotificationEvent::getId)
+                .collectList()
+                .block();
+
+        assertTrue(ids.size() > 10 && ids.size() < 1000);
+        List<String> expected = IntStream.range(1000 - ids.size(), 1000).mapToObj(String::valueOf).toList();
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    @DisplayName("Should drop entries older than the retention")
+    void shouldDropExpiredEntries() {
+        MutableClock clock = new MutableClock();
+        NotificationHistory history = new NotificationHistory(HistoryConfig.builder().retention(Duration.ofMinutes(1)).build(), clock, new MetricsRegistry());
+        history.record(this.createEvent(0));
+        clock.advance(Duration.ofSeconds(61));
+        history.record(this.createEvent(1));
+        history.record(this.createEvent(2));
+
+        assertEquals(2, history.size());
+        StepVerifier.create(history.replay().take(2).map(NotificationEvent::getId))
+                .expectNext("1", "2")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should follow the replayed entries with the live ones without gaps")
+    void shouldReplayThenFollowLiveEntries() {
+        NotificationHistory history = new NotificationHistory(HistoryConfig.builder().build(), new MetricsRegistry());
+        history.record(this.createEvent(0));
+
+        StepVerifier.create(history.replay().take(3).map(NotificationEvent::getId))
+                .expectNext("0")
+                .then(() -> history.record(this.createEvent(1)))
+                .then(() -> history.record(this.createEvent(2)))
+                .expectNext("1", "2")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should keep replaying in order while the buffer grows")
+    void shouldReplayWhileGrowing() {
+        NotificationHistory history = new NotificationHistory(HistoryConfig.builder().capacityBytes(16 * 1024 * 1024).build(), new MetricsRegistry());
+        IntStream.range(0, 100).forEach(i -> history.record(this.createEvent(i)));
+
+        StepVerifier.create(history.replay().map(NotificationEvent::getId), 1)
+                .expectNext("0")
+                // Several times the initial capacity
+                .then(() -> IntStream.range(100, 50_000).forEach(i -> history.record(this.createEvent(i))))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextSequence(IntStream.range(1, 50_000).mapToObj(String::valueOf).toList())
+                .thenCancel()
+                .verify();
+        assertEquals(50_000, history.size());
+    }
+
+    @Test
+    @DisplayName("Should let a slow subscriber skip the entries overwritten before it read them")
+    void shouldSkipEntriesOverwrittenUnderSlowSubscriber() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        NotificationHistory history = new NotificationHistory(HistoryConfig.builder().capacityBytes(4096).build(), metrics);
+        history.record(this.createEvent(0));
+        List<String> ids = new CopyOnWriteArrayList<>();
+
+        StepVerifier.create(history.replay().map(NotificationEvent::getId), 1)
+                .expectNext("0")
+                // Nothing requested, the subscriber holds no entries of its own while the buffer wraps
+                .then(() -> IntStream.range(1, 1000).forEach(i -> history.record(this.createEvent(i))))
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(id -> !"999".equals(id), ids::add)
+                .expectNext("999")
+                .thenCancel()
+                .verify();
+
+        assertTrue(ids.size() > 10 && ids.size() < 998);
+        List<String> expected = IntStream.range(999 - ids.size(), 999).mapToObj(String::valueOf).toList();
+        assertEquals(expected, ids);
+        assertEquals(999 - 1 - ids.size(), metrics.counter("notification_history_lagged_total").count());
+    }
+
+    @Test
+    @DisplayName("Should hand live entries to subscribers without holding the buffer")
+    void shouldEmitOutsideTheLock() {
+        NotificationHistory history = new NotificationHistory(HistoryConfig.builder().build(), new MetricsRegistry());
+        List<Long> sizes = new CopyOnWriteArrayList<>();
+        history.replay().subscribe(event -> sizes.add(CompletableFuture.supplyAsync(history::size)
+                // Another thread reading the buffer while the subscriber runs
+                .completeOnTimeout(-1L, 1, TimeUnit.SECONDS)
+                .join()));
+
+        history.record(this.createEvent(0));
+        history.record(this.createEvent(1));
+
+        assertEquals(List.of(1L, 2L), sizes);
+    }
+
+    private NotificationEvent createEvent(int id) {
+        return NotificationEvent.builder()
+                .id(String.valueOf(id))
+                .source("TEST")
+                .message("Test msg " + id)
+                .priority(Priority.LOW)
+                .timestamp(LocalDateTime.now())
+                .status(NotificationStatus.PENDING)
+                .build();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        void advance(Duration duration) {
+            this.now = this.now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.now;
+        }
+    }
+}
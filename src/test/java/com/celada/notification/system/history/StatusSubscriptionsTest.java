@@ -0,0 +1,65 @@
+package com.celada.notification.system.history;
+
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+import com.celada.notification.system.models.Priority;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatusSubscriptionsTest {
+
+    @Test
+    @DisplayName("Should drop the subscription snapshot when a newer change was handed over first")
+    void shouldNotEndOnStaleSnapshot() {
+        StatusSubscriptions subscriptions = new StatusSubscriptions();
+        NotificationEvent event = this.createEvent("0", NotificationStatus.PENDING);
+
+        StepVerifier.create(subscriptions.watch(event.getId(), () -> {
+                    NotificationEvent stale = event.toBuilder().build();
+                    // Published between the subscription and the read of the snapshot
+                    event.setStatus(NotificationStatus.SENT);
+                    subscriptions.publish(event);
+                    return stale;
+                }))
+                .expectNextMatches(element -> NotificationStatus.SENT.equals(element.getStatus()))
+                .verifyComplete();
+        assertEquals(0, subscriptions.size());
+    }
+
+    @Test
+    @DisplayName("Should fail a watcher that falls a full buffer behind after its buffered changes")
+    void shouldFailSlowWatcher() {
+        StatusSubscriptions subscriptions = new StatusSubscriptions(16);
+        List<String> ids = new ArrayList<>();
+
+        StepVerifier.create(subscriptions.watchSource("TEST"), 0)
+                .then(() -> IntStream.range(0, 100).forEach(i -> subscriptions.publish(this.createEvent(String.valueOf(i), NotificationStatus.PENDING))))
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(element -> true, element -> ids.add(element.getId()))
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify();
+        // The changes buffered before it fell behind
+        assertEquals(IntStream.range(0, 16).mapToObj(String::valueOf).toList(), ids);
+        assertEquals(0, subscriptions.size());
+    }
+
+    private NotificationEvent createEvent(String id, NotificationStatus status) {
+        return NotificationEvent.builder()
+                .id(id)
+                .source("TEST")
+                .message("Test msg " + id)
+                .priority(Priority.LOW)
+                .timestamp(LocalDateTime.MIN)
+                .status(status)
+                .build();
+    }
+}
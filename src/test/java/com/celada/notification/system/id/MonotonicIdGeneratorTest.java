@@ -0,0 +1,83 @@
+package com.celada.notification.system.id;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonotonicIdGeneratorTest {
+
+    @Test
+    @DisplayName("Should hand out unique and increasing ids from many threads")
+    void shouldHandOutUniqueIncreasingIds() throws Exception {
+        MonotonicIdGenerator generator = new MonotonicIdGenerator(Clock.systemUTC());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(generator.nextId());
+                }
+                return ids;
+            }));
+        }
+
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            List<String> ids = future.get();
+            for (int i = 1; i < ids.size(); i++) {
+                // String order of each thread is the order it got them
+                assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0);
+            }
+            all.addAll(ids);
+        }
+        executor.shutdown();
+        assertEquals(200_000, all.size());
+    }
+
+    @Test
+    @DisplayName("Should keep ids increasing when the clock stands still or goes back")
+    void shouldStayMonotonicWithStoppedClock() {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        MonotonicIdGenerator generator = new MonotonicIdGenerator(Clock.fixed(now, ZoneOffset.UTC));
+
+        long previous = generator.next();
+        // More than a millisecond worth of sequence
+        for (int i = 0; i < (1 << MonotonicIdGenerator.SEQUENCE_BITS) + 10; i++) {
+            long next = generator.next();
+            assertTrue(next > previous);
+            previous = next;
+        }
+        assertEquals(now.plusMillis(1), MonotonicIdGenerator.timestampOf(MonotonicIdGenerator.encode(previous)));
+    }
+
+    @Test
+    @DisplayName("Should round trip ids and bound them by creation time")
+    void shouldRoundTripAndBoundIds() {
+        Instant now = Instant.parse("2026-01-01T00:00:00.123Z");
+        MonotonicIdGenerator generator = new MonotonicIdGenerator(Clock.fixed(now, ZoneOffset.UTC));
+
+        String id = generator.nextId();
+        assertEquals(MonotonicIdGenerator.LENGTH, id.length());
+        assertEquals(id, MonotonicIdGenerator.encode(MonotonicIdGenerator.decode(id)));
+        assertEquals(now, MonotonicIdGenerator.timestampOf(id));
+        assertTrue(MonotonicIdGenerator.lowerBound(now).compareTo(id) <= 0);
+        assertTrue(MonotonicIdGenerator.lowerBound(now.plusMillis(1)).compareTo(id) > 0);
+        assertFalse(MonotonicIdGenerator.isValid("6f1c2a4e-0000-4000-8000-000000000000"));
+        assertFalse(MonotonicIdGenerator.isValid("0000000000OIL"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.celada.notification.system.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Should report percentiles within the bucket precision")
+    void shouldReportPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 to 10 000 microseconds
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertEquals(10_000_000, histogram.max());
+        assertWithin(5_000_000, histogram.percentile(0.5));
+        assertWithin(9_900_000, histogram.percentile(0.99));
+        assertWithin(9_990_000, histogram.percentile(0.999));
+    }
+
+    @Test
+    @DisplayName("Should map every value to a bucket holding it")
+    void shouldBucketEveryMagnitude() {
+        for (long value : new long[]{0, 1, 63, 64, 65, 1_000, 123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+        }
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.04, "Expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,59 @@
+package com.celada.notification.system.storage;
+
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+import com.celada.notification.system.models.Priority;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillQueueTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should cut off the read records while the queue is never read empty")
+    void shouldCompactReadPrefix() throws IOException {
+        Path path = this.directory.resolve("shard-0.spill");
+        try (SpillQueue queue = SpillQueue.open(path, 4096)) {
+            int next = 0;
+            int expected = 0;
+            // Always 10 events behind
+            for (; next < 10; next++) {
+                queue.offer(this.createEvent(next));
+            }
+            for (; next < 10_000; next++) {
+                queue.offer(this.createEvent(next));
+                assertEquals(String.valueOf(expected++), queue.poll().getId());
+            }
+
+            assertEquals(10, queue.size());
+            assertTrue(Files.size(path) < 3 * 4096);
+            NotificationEvent event;
+            while ((event = queue.poll()) != null) {
+                assertEquals(String.valueOf(expected++), event.getId());
+            }
+            assertEquals(10_000, expected);
+        }
+    }
+
+    private NotificationEvent createEvent(int id) {
+        return NotificationEvent.builder()
+                .id(String.valueOf(id))
+                .source("TEST")
+                .message("Test msg " + id)
+                .priority(Priority.LOW)
+                .timestamp(LocalDateTime.now())
+                .status(NotificationStatus.PENDING)
+                .build();
+    }
+}
@@ -0,0 +1,124 @@
+package com.celada.notification.system.storage;
+
+import com.celada.notification.system.config.WalConfig;
+import com.celada.notification.system.models.NotificationEvent;
+import com.celada.notification.system.models.NotificationStatus;
+import com.celada.notification.system.models.Priority;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should recover the events that never reached SENT")
+    void shouldRecoverEventsNotSent() {
+        NotificationEvent pending = this.createTestEvent(Priority.LOW);
+        NotificationEvent failed = this.createTestEvent(Priority.MEDIUM);
+        NotificationEvent sent = this.createTestEvent(Priority.HIGH);
+        NotificationEvent discarded = this.createTestEvent(Priority.HIGH);
+
+        try (WriteAheadLog wal = WriteAheadLog.open(this.config(FsyncMode.SYNC, 1024 * 1024))) {
+            wal.appendEvent(pending);
+            wal.appendEvent(failed);
+            wal.appendEvent(sent);
+            wal.appendEvent(discarded);
+            wal.appendStatus(failed.getId(), NotificationStatus.FAILED);
+            wal.appendStatus(sent.getId(), NotificationStatus.SENT);
+            wal.appendDiscard(discarded.getId());
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(this.config(FsyncMode.SYNC, 1024 * 1024))) {
+            List<NotificationEvent> recovered = wal.getRecoveredEvents();
+
+            assertEquals(2, recovered.size());
+            assertEquals(pending, recovered.get(0));
+            assertEquals(failed.getId(), recovered.get(1).getId());
+            assertEquals(NotificationStatus.FAILED, recovered.get(1).getStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Should delete segments once all their events are SENT")
+    void shouldDeleteSentSegments() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(this.config(FsyncMode.BATCH, 4096))) {
+            for (int i = 0; i < 500; i++) {
+                NotificationEvent event = this.createTestEvent(Priority.LOW);
+                wal.appendEvent(event);
+                wal.appendStatus(event.getId(), NotificationStatus.SENT);
+            }
+
+            assertEquals(1, this.segmentCount());
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(this.config(FsyncMode.BATCH, 4096))) {
+            assertTrue(wal.getRecoveredEvents().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should move events never sent forward instead of keeping every newer segment")
+    void shouldCompactSegmentsPinnedByFailedEvents() throws IOException {
+        NotificationEvent failed = this.createTestEvent(Priority.HIGH);
+        WalConfig config = this.config(FsyncMode.BATCH, 4096).toBuilder().maxSealedSegments(2).build();
+        try (WriteAheadLog wal = WriteAheadLog.open(config)) {
+            wal.appendEvent(failed);
+            wal.appendStatus(failed.getId(), NotificationStatus.FAILED);
+            for (int i = 0; i < 500; i++) {
+                NotificationEvent event = this.createTestEvent(Priority.LOW);
+                wal.appendEvent(event);
+                wal.appendStatus(event.getId(), NotificationStatus.SENT);
+            }
+
+            assertTrue(this.segmentCount() <= 3);
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(config)) {
+            List<NotificationEvent> recovered = wal.getRecoveredEvents();
+
+            assertEquals(1, recovered.size());
+            assertEquals(failed.getId(), recovered.get(0).getId());
+            assertEquals(NotificationStatus.FAILED, recovered.get(0).getStatus());
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.count();
+        }
+    }
+
+    private WalConfig config(FsyncMode fsyncMode, int segmentSize) {
+        return WalConfig.builder()
+                .enabled(true)
+                .directory(this.directory)
+                .segmentSize(segmentSize)
+                .fsyncMode(fsyncMode)
+                .build();
+    }
+
+    private NotificationEvent createTestEvent(Priority priority) {
+        return NotificationEvent.builder()
+                .id(UUID.randomUUID().toString())
+                .source("TEST")
+                .message("Test msg with priority: " + priority.toString())
+                .priority(priority)
+                .timestamp(LocalDateTime.now())
+                .status(NotificationStatus.PENDING)
+                .build();
+    }
+}